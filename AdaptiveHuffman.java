@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * Adaptive Huffman coding with the FGK algorithm: encoder and decoder start from the same empty
+ * tree and update it identically after every char, so no alphabet or frequencies are needed up
+ * front and the input is coded in a single pass. A char seen for the first time is sent as the
+ * code of the not-yet-transmitted (NYT) leaf followed by the char's 16 bits, which adds it to
+ * the tree, instead of being rejected as outside the alphabet.
+ *
+ * Nodes are numbered by their index, the root at index 0 and later indexes for lower numbers, so
+ * the sibling property means weights never increase with the index. An instance holds the state
+ * of one side of one stream, and is not safe for concurrent use.
+ */
+public class AdaptiveHuffman {
+    private static final int NYT = -1;
+    private static final int INTERNAL = -2;
+
+    private long[] weight = new long[64];
+    private int[] parent = new int[64];
+    private int[] left = new int[64];
+    private int[] right = new int[64];
+    //the char of a leaf, or NYT or INTERNAL
+    private int[] symbol = new int[64];
+    private int size;
+    private int nyt;
+    //index of the leaf of every char seen so far, 0 (the root, never a char leaf) if unseen
+    private final int[] leafOf = new int[FrequencyCounter.ALPHABET_SIZE];
+    //scratch for the bits of a code, collected from the leaf up
+    private byte[] path = new byte[64];
+
+    /**
+     * Creates the empty model, whose only node is the NYT leaf.
+     */
+    public AdaptiveHuffman() {
+        size = 1;
+        parent[0] = -1;
+        symbol[0] = NYT;
+        nyt = 0;
+    }
+
+    /**
+     * Compresses the input string with a fresh model.
+     *
+     * @param input the string to compress, can be the empty string
+     * @return a string of ones and zeroes, representing the binary encoding of the inputted String
+     * @throws IllegalArgumentException if the input is null
+     */
+    public static String compress(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        AdaptiveHuffman model = new AdaptiveHuffman();
+        BitWriter w = new BitWriter();
+        for (int i = 0; i < input.length(); i++) {
+            model.encode(input.charAt(i), w);
+        }
+        return Huffman.toBitString(w.toByteArray(), w.bitLength());
+    }
+
+    /**
+     * Decompresses a string produced by {@link #compress(String)}.
+     *
+     * @param input the String of binary digits to decompress
+     * @return the decoded version of the compressed input string
+     * @throws IllegalArgumentException if the input is null, or if the input contains characters
+     * that are NOT 0 or 1, or input contains a sequence of bits that is not decodable
+     */
+    public static String decompress(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        AdaptiveHuffman model = new AdaptiveHuffman();
+        BitReader in = new BitReader(Huffman.fromBitString(input), input.length());
+        StringBuilder b = new StringBuilder();
+        while (in.remaining() > 0) {
+            b.append(model.decode(in));
+        }
+        return b.toString();
+    }
+
+    /**
+     * @return the number of distinct chars seen so far
+     */
+    public int size() {
+        return (size - 1) / 2;
+    }
+
+    //appends the code of c, escaped if c is new, then updates the tree
+    void encode(char c, BitWriter w) {
+        int leaf = leafOf[c];
+        if (leaf == 0) {
+            writePath(nyt, w);
+            w.write(c, 16);
+        } else {
+            writePath(leaf, w);
+        }
+        update(c);
+    }
+
+    /**
+     * Decodes one char and updates the tree.
+     *
+     * @throws IllegalArgumentException if the input ends in the middle of a code
+     */
+    char decode(BitReader in) {
+        int node = 0;
+        while (symbol[node] == INTERNAL) {
+            if (in.remaining() <= 0) {
+                throw new IllegalArgumentException("invalid");
+            }
+            node = in.readBit() == 0 ? left[node] : right[node];
+        }
+        char c;
+        if (node == nyt) {
+            if (in.remaining() < 16) {
+                throw new IllegalArgumentException("invalid");
+            }
+            c = (char) (in.peek() >>> 48);
+            in.skip(16);
+        } else {
+            c = (char) symbol[node];
+        }
+        update(c);
+        return c;
+    }
+
+    private void writePath(int node, BitWriter w) {
+        int depth = 0;
+        for (int n = node; n != 0; n = parent[n]) {
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, 2 * depth);
+            }
+            path[depth++] = (byte) (right[parent[n]] == n ? 1 : 0);
+        }
+        //root first, in words of up to 56 bits
+        while (depth > 0) {
+            int n = Math.min(depth, 56);
+            long code = 0;
+            for (int k = 0; k < n; k++) {
+                code = (code << 1) | path[--depth];
+            }
+            w.write(code, n);
+        }
+    }
+
+    /*
+     * FGK update: a new char splits the NYT leaf into a new NYT and the char's leaf. Then, from
+     * the leaf (or the old NYT) up to the root, every node is first swapped with the highest
+     * numbered node of equal weight other than its parent, and then incremented.
+     */
+    private void update(char c) {
+        int q;
+        if (leafOf[c] == 0) {
+            if (size + 2 > weight.length) {
+                grow();
+            }
+            int old = nyt;
+            int leaf = size++;
+            nyt = size++;
+            symbol[old] = INTERNAL;
+            left[old] = nyt;
+            right[old] = leaf;
+            weight[old] = 1;
+            parent[leaf] = old;
+            symbol[leaf] = c;
+            weight[leaf] = 1;
+            leafOf[c] = leaf;
+            parent[nyt] = old;
+            symbol[nyt] = NYT;
+            weight[nyt] = 0;
+            q = parent[old];
+        } else {
+            q = leafOf[c];
+        }
+        while (q != -1) {
+            int leader = q;
+            while (leader > 0 && weight[leader - 1] == weight[q]) {
+                leader--;
+            }
+            if (leader == parent[q]) {
+                leader++;
+            }
+            if (leader != q) {
+                swap(leader, q);
+                q = leader;
+            }
+            weight[q]++;
+            q = parent[q];
+        }
+    }
+
+    //exchanges the subtrees at two positions, which keep their parents
+    private void swap(int a, int b) {
+        long w = weight[a];
+        weight[a] = weight[b];
+        weight[b] = w;
+        int t = symbol[a];
+        symbol[a] = symbol[b];
+        symbol[b] = t;
+        t = left[a];
+        left[a] = left[b];
+        left[b] = t;
+        t = right[a];
+        right[a] = right[b];
+        right[b] = t;
+        relink(a);
+        relink(b);
+    }
+
+    //points the children or the leaf entry of the node at position i back at i
+    private void relink(int i) {
+        if (symbol[i] == INTERNAL) {
+            parent[left[i]] = i;
+            parent[right[i]] = i;
+        } else if (symbol[i] == NYT) {
+            nyt = i;
+        } else {
+            leafOf[symbol[i]] = i;
+        }
+    }
+
+    private void grow() {
+        int capacity = 2 * weight.length;
+        weight = Arrays.copyOf(weight, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        symbol = Arrays.copyOf(symbol, capacity);
+    }
+}
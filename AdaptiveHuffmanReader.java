@@ -0,0 +1,88 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * A {@link Reader} that decompresses a stream written by {@link AdaptiveHuffmanWriter}, updating
+ * its own {@link AdaptiveHuffman} model as it decodes. One frame of packed bits is held in memory
+ * at a time. Not safe for concurrent use.
+ */
+public class AdaptiveHuffmanReader extends Reader {
+    private final DataInputStream in;
+    private final AdaptiveHuffman model = new AdaptiveHuffman();
+    private byte[] frameData = new byte[0];
+    //bits of the current frame not decoded yet, null before the first frame
+    private BitReader frame;
+    private boolean ended;
+    private boolean closed;
+
+    /**
+     * @param in the stream of compressed frames
+     * @throws IllegalArgumentException if in is null
+     */
+    public AdaptiveHuffmanReader(InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("in null");
+        }
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the stream is closed, ends before its end marker, or holds bits
+     * that are not decodable
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (!ended) {
+            if (frame != null && frame.remaining() > 0) {
+                int n = 0;
+                try {
+                    while (n < len && frame.remaining() > 0) {
+                        cbuf[off + n++] = model.decode(frame);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("corrupt Huffman stream", e);
+                }
+                return n;
+            }
+            nextFrame();
+        }
+        return -1;
+    }
+
+    private void nextFrame() throws IOException {
+        int bits = in.readInt();
+        if (bits < 0) {
+            throw new IOException("corrupt Huffman stream: negative frame length");
+        }
+        if (bits == 0) {
+            ended = true;
+            return;
+        }
+        int bytes = (int) ((bits + 7L) / 8);
+        //a writer can overshoot its frame size by one code at most
+        if (bytes > 2 * HuffmanWriter.MAX_FRAME_BYTES + 8) {
+            throw new IOException("corrupt Huffman stream: frame too long");
+        }
+        if (frameData.length < bytes) {
+            frameData = new byte[bytes];
+        }
+        in.readFully(frameData, 0, bytes);
+        frame = new BitReader(frameData, bits);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        in.close();
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that compresses the chars written to it in a single pass with an
+ * {@link AdaptiveHuffman} model, so no seed or alphabet is needed and any char can be written.
+ * The stream has the frame format of {@link HuffmanWriter}, and the model carries over from one
+ * frame to the next. It is read back by {@link AdaptiveHuffmanReader}. Not safe for concurrent
+ * use.
+ */
+public class AdaptiveHuffmanWriter extends Writer {
+    private final DataOutputStream out;
+    private final AdaptiveHuffman model = new AdaptiveHuffman();
+    private final int frameBytes;
+    private final BitWriter frame;
+    private boolean closed;
+
+    /**
+     * @param out the stream to write the compressed frames to
+     * @throws IllegalArgumentException if out is null
+     */
+    public AdaptiveHuffmanWriter(OutputStream out) {
+        this(out, HuffmanWriter.DEFAULT_FRAME_BYTES);
+    }
+
+    /**
+     * @param out the stream to write the compressed frames to
+     * @param frameBytes the number of packed bytes to buffer before writing a frame
+     * @throws IllegalArgumentException if out is null, or frameBytes is not between 1 and
+     * {@link HuffmanWriter#MAX_FRAME_BYTES}
+     */
+    public AdaptiveHuffmanWriter(OutputStream out, int frameBytes) {
+        if (out == null) {
+            throw new IllegalArgumentException("out null");
+        }
+        if (frameBytes <= 0 || frameBytes > HuffmanWriter.MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("frame size out of range");
+        }
+        this.out = new DataOutputStream(out);
+        this.frameBytes = frameBytes;
+        frame = new BitWriter(frameBytes + 8);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        for (int i = off; i < off + len; i++) {
+            model.encode(cbuf[i], frame);
+            if (frame.byteLength() >= frameBytes) {
+                writeFrame();
+            }
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        model.encode((char) c, frame);
+        if (frame.byteLength() >= frameBytes) {
+            writeFrame();
+        }
+    }
+
+    /**
+     * Writes out the chars buffered so far as a frame, then flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeFrame();
+        out.flush();
+    }
+
+    /**
+     * Writes out the chars buffered so far and the end of the stream, then closes the underlying
+     * stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeFrame();
+            out.writeInt(0);
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        if (frame.bitLength() == 0) {
+            return;
+        }
+        out.writeInt((int) frame.bitLength());
+        frame.writeTo(out);
+        frame.reset();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+}
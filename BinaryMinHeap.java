@@ -37,7 +37,7 @@ public interface BinaryMinHeap<Key extends Comparable<Key>, V> {
      * @param value  the value to check, may be null
      * @return  true if the min-heap contains the specified value
      *
-     * Runtime: O(n)
+     * Runtime: O(1)
      */
     boolean containsValue(V value);
 
@@ -49,31 +49,22 @@ public interface BinaryMinHeap<Key extends Comparable<Key>, V> {
      * @throws IllegalArgumentException  if key is null
      * @throws IllegalArgumentException  if value is already in the min-heap
      *
-     * Runtime: O(n)
+     * Runtime: O(log n)
      */
     void add(Key key, V value);
 
     /**
      * Updates the key of a particular value in the min-heap
-     * to a smaller key.
+     * to a smaller key, moving the value up to its new place.
      *
      * @param value  the value whose associated key to update
      * @param newKey  the key to update value with
      * @throws NoSuchElementException  if value is not in the heap
      * @throws IllegalArgumentException  if newKey is null or newKey > key(value)
      *
-     * Runtime: O(n)
+     * Runtime: O(log n)
      */
-    default void decreaseKey(V value, Key newKey) {
-        /** 
-         * NOTE: 
-         *
-         * You do NOT need to implement this method for the Huffman assignment. 
-         * You will be using it for a later assignment, so wait until then
-         * before trying to implement this method. 
-         */
-        throw new UnsupportedOperationException();
-    }
+    void decreaseKey(V value, Key newKey);
 
     /**
      * @return  the value with the smallest key in the min-heap
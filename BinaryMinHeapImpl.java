@@ -7,10 +7,14 @@ import java.util.*;
  *
  */
 public class BinaryMinHeapImpl<Key extends Comparable<Key>, V> implements BinaryMinHeap<Key, V> {
+    //entries in heap order: the children of i are at 2i + 1 and 2i + 2
     private List<Entry<Key, V>> li;
+    //position of every value in li, kept in sync by swap
+    private Map<V, Integer> index;
 
     public BinaryMinHeapImpl() {
         li = new ArrayList<Entry<Key, V>>();
+        index = new HashMap<V, Integer>();
     }
 
 
@@ -34,12 +38,7 @@ public class BinaryMinHeapImpl<Key extends Comparable<Key>, V> implements Binary
      */
     @Override
     public boolean containsValue(V value) {
-        for (int i = 0; i < li.size(); i++) {
-            if (li.get(i).getValue().equals(value)) {
-                return true;
-            }
-        }
-        return false;
+        return index.containsKey(value);
     }
 
     /**
@@ -55,29 +54,31 @@ public class BinaryMinHeapImpl<Key extends Comparable<Key>, V> implements Binary
         }
 
         Entry<Key, V> e = new Entry<Key, V>(key, value);
-        Key myK = e.getKey();
-        V myV = e.getValue();
-        if (isEmpty()) {
-            li.add(0, e);
-            return;
+        li.add(e);
+        index.put(value, li.size() - 1);
+        siftUp(li.size() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void decreaseKey(V value, Key newKey) {
+        Integer i = index.get(value);
+        if (i == null) {
+            throw new NoSuchElementException();
         }
-        for (int i = 0; i < li.size(); i++) {
-            if (i == 0 && myK.compareTo(li.get(i).getKey()) < 0) {
-                li.add(0, e);
-                return;
-            } else if (i == li.size() - 1) {
-                li.add(i + 1, e);
-                return;
-            } else if (myK.compareTo(li.get(i).getKey()) >= 0 &&
-                    myK.compareTo(li.get(i + 1).getKey()) <= 0) {
-                li.add(i + 1, e);
-                return;
-            }
+        if (newKey == null) {
+            throw new IllegalArgumentException("key is null");
         }
-
+        Entry<Key, V> e = li.get(i);
+        if (newKey.compareTo(e.getKey()) > 0) {
+            throw new IllegalArgumentException("new key is larger than the current key");
+        }
+        e.setKey(newKey);
+        siftUp(i);
     }
 
-
     /**
      * {@inheritDoc}
      */
@@ -88,28 +89,49 @@ public class BinaryMinHeapImpl<Key extends Comparable<Key>, V> implements Binary
         }
         return li.get(0).getValue();
     }
-    //helper for re-minheapifying the heap
+    //helper for re-minheapifying the heap below i
     void minHeapify(int i) {
-        Entry<Key, V> min = li.get(i);
-        int smallestIndex = i;
-        if ((i + 1) * 2 <= size()) {
-            Entry<Key, V> left = li.get((i + 1) * 2 - 1);
-            if (left.getKey().compareTo(li.get(i).getKey()) < 0) {
-                smallestIndex = (i + 1) * 2 - 1;
-                min = left;
+        int size = size();
+        while (true) {
+            int smallestIndex = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && less(left, smallestIndex)) {
+                smallestIndex = left;
             }
-        }
-        if ((i + 1) * 2 + 1 <= size()) {
-            Entry<Key, V> right = li.get((i + 1) * 2);
-            if (right.getKey().compareTo(min.getKey()) < 0) {
-                smallestIndex = (i + 1) * 2;
+            if (right < size && less(right, smallestIndex)) {
+                smallestIndex = right;
+            }
+            if (smallestIndex == i) {
+                return;
             }
+            swap(i, smallestIndex);
+            i = smallestIndex;
         }
-        if (smallestIndex != i) {
-            Collections.swap(li, i, smallestIndex);
-            minHeapify(smallestIndex);
+    }
+
+    //helper for moving an entry up until its parent is no larger
+    void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
         }
+    }
+
+    private boolean less(int i, int j) {
+        return li.get(i).getKey().compareTo(li.get(j).getKey()) < 0;
+    }
 
+    private void swap(int i, int j) {
+        Entry<Key, V> e = li.get(i);
+        li.set(i, li.get(j));
+        li.set(j, e);
+        index.put(li.get(i).getValue(), i);
+        index.put(e.getValue(), j);
     }
 
     /**
@@ -120,7 +142,10 @@ public class BinaryMinHeapImpl<Key extends Comparable<Key>, V> implements Binary
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        Entry<Key, V> e = li.remove(0);
+        Entry<Key, V> e = li.get(0);
+        swap(0, li.size() - 1);
+        li.remove(li.size() - 1);
+        index.remove(e.getValue());
         if (size() != 0) {
             minHeapify(0);
         }
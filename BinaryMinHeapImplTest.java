@@ -1,7 +1,11 @@
 import org.junit.Test;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -248,4 +252,67 @@ public class BinaryMinHeapImplTest {
         assertTrue(b.values().contains(1));
     }
 
-}
\ No newline at end of file
+    //test on null values, which the heap allows
+    @Test
+    public void testNullValue() {
+        BinaryMinHeapImpl<Integer, Integer> b = new BinaryMinHeapImpl<Integer, Integer>();
+        b.add(2, 3);
+        assertFalse(b.containsValue(null));
+        b.add(1, null);
+        assertTrue(b.containsValue(null));
+        assertNull(b.extractMin());
+        assertFalse(b.containsValue(null));
+    }
+
+    //test on decreaseKey
+    @Test
+    public void testDecreaseKey() {
+        BinaryMinHeapImpl<Integer, Integer> b = new BinaryMinHeapImpl<Integer, Integer>();
+        b.add(6, 6);
+        b.add(5, 5);
+        b.add(4, 4);
+        b.add(3, 3);
+        b.decreaseKey(6, 1);
+        assertEquals((Integer) 6, b.peek());
+        b.decreaseKey(5, 5);
+        assertEquals((Integer) 6, b.extractMin());
+        assertEquals((Integer) 3, b.extractMin());
+        assertEquals((Integer) 4, b.extractMin());
+        assertEquals((Integer) 5, b.extractMin());
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void testDecreaseKeyMissing() {
+        BinaryMinHeapImpl<Integer, Integer> b = new BinaryMinHeapImpl<Integer, Integer>();
+        b.add(2, 3);
+        b.decreaseKey(2, 1);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDecreaseKeyLarger() {
+        BinaryMinHeapImpl<Integer, Integer> b = new BinaryMinHeapImpl<Integer, Integer>();
+        b.add(2, 3);
+        b.decreaseKey(3, 4);
+    }
+
+    //test on a big heap against sorting
+    @Test
+    public void testBigRandomHeap() {
+        BinaryMinHeapImpl<Integer, Integer> b = new BinaryMinHeapImpl<Integer, Integer>();
+        Random r = new Random(7);
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 2000; i++) {
+            int key = r.nextInt(500);
+            keys.add(key);
+            b.add(key, i);
+        }
+        List<Integer> sorted = new ArrayList<Integer>(keys);
+        Collections.sort(sorted);
+        for (int key : sorted) {
+            int value = b.extractMin();
+            assertEquals(key, (int) keys.get(value));
+            assertFalse(b.containsValue(value));
+        }
+        assertTrue(b.isEmpty());
+    }
+}
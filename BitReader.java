@@ -0,0 +1,87 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Reads packed bits, most significant bit first, as written by {@link BitWriter}. Bit positions
+ * are absolute: bit 0 is the top bit of the byte at index 0 of the buffer, regardless of the
+ * buffer's position.
+ */
+class BitReader {
+    private final ByteBuffer data;
+    private final long end;
+    private long pos;
+
+    /**
+     * @param data  the packed bits
+     * @param bitLength  the number of meaningful bits at the start of data
+     */
+    BitReader(byte[] data, long bitLength) {
+        this(ByteBuffer.wrap(data), 0, bitLength);
+    }
+
+    /**
+     * @param data  the packed bits, read with absolute indexes
+     * @param pos  the bit to start reading at
+     * @param end  the bit to stop reading at, exclusive
+     */
+    BitReader(ByteBuffer data, long pos, long end) {
+        //duplicate() resets the byte order to big endian, which peek relies on
+        this.data = data.duplicate();
+        this.pos = pos;
+        this.end = end;
+    }
+
+    /**
+     * @return  the number of bits left before the end
+     */
+    long remaining() {
+        return end - pos;
+    }
+
+    /**
+     * @return  the position of the next bit to read
+     */
+    long position() {
+        return pos;
+    }
+
+    /**
+     * Moves past bits that have been consumed after a {@link #peek()}.
+     *
+     * @param bits  the number of bits to skip
+     */
+    void skip(int bits) {
+        pos += bits;
+    }
+
+    /**
+     * @return  the next bit, or 0 if there are no bits left
+     */
+    int readBit() {
+        int bit = (int) (peek() >>> 63);
+        pos++;
+        return bit;
+    }
+
+    /**
+     * Looks at the upcoming bits without consuming them. At least 57 bits are valid; bits past
+     * the end of the buffer read as zero, and bits past {@link #remaining()} are unspecified.
+     *
+     * @return  the upcoming bits, left aligned
+     */
+    long peek() {
+        int i = (int) (pos >>> 3);
+        long window;
+        if (i + 8 <= data.limit()) {
+            window = data.getLong(i);
+        } else {
+            window = 0;
+            for (int k = 0; k < 8; k++) {
+                window <<= 8;
+                if (i + k < data.limit()) {
+                    window |= data.get(i + k) & 0xFF;
+                }
+            }
+        }
+        return window << (pos & 7);
+    }
+}
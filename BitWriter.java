@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Packs variable-length codes into bytes, most significant bit first. The final byte is padded
+ * with zero bits, so the number of meaningful bits has to be carried separately; see
+ * {@link #bitLength()}.
+ */
+class BitWriter {
+    private byte[] buf;
+    private int size;
+    //pending bits that do not fill a whole byte yet, right aligned
+    private long acc;
+    private int accBits;
+    private long bitLength;
+
+    BitWriter() {
+        this(64);
+    }
+
+    BitWriter(int initialBytes) {
+        buf = new byte[Math.max(initialBytes, 8)];
+    }
+
+    /**
+     * Appends the low {@code length} bits of {@code code}, highest bit first.
+     *
+     * @param code  the bits to append, no bits may be set above {@code length}
+     * @param length  the number of bits to append, between 0 and 64
+     */
+    void write(long code, int length) {
+        if (length > 56) {
+            write(code >>> 32, length - 32);
+            write(code & 0xFFFFFFFFL, 32);
+            return;
+        }
+        acc = (acc << length) | code;
+        accBits += length;
+        bitLength += length;
+        if (size + 8 > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + 8));
+        }
+        while (accBits >= 8) {
+            accBits -= 8;
+            buf[size++] = (byte) (acc >>> accBits);
+        }
+    }
+
+    /**
+     * Appends every bit written to {@code other} so far.
+     *
+     * @param other  the bits to append
+     */
+    void append(BitWriter other) {
+        if (accBits == 0) {
+            //byte aligned, the whole bytes can be copied as they are
+            if (size + other.size + 8 > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + other.size + 8));
+            }
+            System.arraycopy(other.buf, 0, buf, size, other.size);
+            size += other.size;
+            bitLength += 8L * other.size;
+        } else {
+            int i = 0;
+            for (; i + 7 <= other.size; i += 7) {
+                long chunk = 0;
+                for (int k = 0; k < 7; k++) {
+                    chunk = (chunk << 8) | (other.buf[i + k] & 0xFF);
+                }
+                write(chunk, 56);
+            }
+            for (; i < other.size; i++) {
+                write(other.buf[i] & 0xFF, 8);
+            }
+        }
+        if (other.accBits > 0) {
+            write(other.acc & ((1L << other.accBits) - 1), other.accBits);
+        }
+    }
+
+    /**
+     * @return  the number of bits written so far
+     */
+    long bitLength() {
+        return bitLength;
+    }
+
+    /**
+     * @return  the number of bytes needed to hold every bit written so far
+     */
+    int byteLength() {
+        return accBits == 0 ? size : size + 1;
+    }
+
+    /**
+     * @return  the packed bits, with the last byte padded with zeroes
+     */
+    byte[] toByteArray() {
+        byte[] out = Arrays.copyOf(buf, byteLength());
+        if (accBits > 0) {
+            out[size] = (byte) (acc << (8 - accBits));
+        }
+        return out;
+    }
+
+    /**
+     * Copies the packed bits into {@code out}, starting at its position.
+     *
+     * @param out  the buffer to write to
+     * @throws java.nio.BufferOverflowException  if out has fewer than {@link #byteLength()}
+     *                                           bytes remaining
+     */
+    void writeTo(ByteBuffer out) {
+        out.put(buf, 0, size);
+        if (accBits > 0) {
+            out.put((byte) (acc << (8 - accBits)));
+        }
+    }
+
+    /**
+     * Writes the packed bits to {@code out}, with the last byte padded with zeroes.
+     *
+     * @param out  the stream to write to
+     * @throws IOException  if out throws
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+        if (accBits > 0) {
+            out.write((byte) (acc << (8 - accBits)));
+        }
+    }
+
+    /**
+     * Discards everything written so far, keeping the buffer for reuse.
+     */
+    void reset() {
+        size = 0;
+        acc = 0;
+        accBits = 0;
+        bitLength = 0;
+    }
+}
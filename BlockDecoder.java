@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Decompresses {@link EncodedBlocks} by decoding every block concurrently. The block index gives
+ * each block its own starting bit and its place in the output, since Huffman codes can not be
+ * resynchronized in the middle of a stream.
+ */
+public class BlockDecoder {
+    private final HuffmanCodec codec;
+    private final Executor executor;
+
+    /**
+     * Creates a decoder that runs on the common fork-join pool.
+     *
+     * @param huffman the encoding the blocks were compressed with
+     * @throws IllegalArgumentException if huffman is null
+     */
+    public BlockDecoder(Huffman huffman) {
+        this(huffman, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param huffman the encoding the blocks were compressed with
+     * @param executor runs the decoding of each block
+     * @throws IllegalArgumentException if huffman or executor is null
+     */
+    public BlockDecoder(Huffman huffman, Executor executor) {
+        if (huffman == null) {
+            throw new IllegalArgumentException("huffman null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor null");
+        }
+        codec = huffman.getCodec();
+        this.executor = executor;
+    }
+
+    /**
+     * @param blocks the compressed blocks
+     * @return the decoded text
+     * @throws IllegalArgumentException if blocks is null or does not decode to exactly the
+     * symbols its index records
+     */
+    public String decode(EncodedBlocks blocks) {
+        return new String(decodeToArray(blocks));
+    }
+
+    /**
+     * Decodes every block straight into its slice of one output array.
+     *
+     * @param blocks the compressed blocks
+     * @return the decoded chars
+     * @throws IllegalArgumentException if blocks is null or does not decode to exactly the
+     * symbols its index records
+     */
+    public char[] decodeToArray(final EncodedBlocks blocks) {
+        if (blocks == null) {
+            throw new IllegalArgumentException("blocks null");
+        }
+        long total = blocks.getSymbolCount();
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many symbols for a char array");
+        }
+        final char[] out = new char[(int) total];
+        final DecodeTable table = codec.decodeTable();
+        int count = blocks.getBlockCount();
+        if (table == null) {
+            //codes too long for the tables, walk the tree block by block, still checking the index
+            int start = 0;
+            for (int b = 0; b < count; b++) {
+                long to = b + 1 < count ? blocks.getBlockOffset(b + 1) : blocks.getBitLength();
+                String text = codec.decompressByTree(new BitReader(
+                        ByteBuffer.wrap(blocks.getData()), blocks.getBlockOffset(b), to));
+                if (text.length() != blocks.getBlockSymbols(b)) {
+                    throw new IllegalArgumentException("invalid");
+                }
+                text.getChars(0, text.length(), out, start);
+                start += text.length();
+            }
+            return out;
+        }
+
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(count);
+        int start = 0;
+        for (int b = 0; b < count; b++) {
+            final long from = blocks.getBlockOffset(b);
+            final long to = b + 1 < count ? blocks.getBlockOffset(b + 1) : blocks.getBitLength();
+            final int outStart = start;
+            final int symbols = blocks.getBlockSymbols(b);
+            start += symbols;
+            FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    BitReader in = new BitReader(ByteBuffer.wrap(blocks.getData()), from, to);
+                    int n = table.decode(in, out, outStart, symbols);
+                    if (n != symbols || in.remaining() != 0) {
+                        throw new IllegalArgumentException("invalid");
+                    }
+                    return null;
+                }
+            });
+            tasks.add(task);
+            if (b < count - 1) {
+                executor.execute(task);
+            }
+        }
+        if (count > 0) {
+            tasks.get(count - 1).run();
+        }
+        for (FutureTask<Void> task : tasks) {
+            BlockEncoder.join(task);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Compresses large inputs with a shared {@link Huffman} code table by splitting them into blocks
+ * of a fixed number of chars, encoding the blocks concurrently, and concatenating the packed bits
+ * with an index of the block offsets.
+ */
+public class BlockEncoder {
+    /** Block size used when none is given, in chars. */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private final HuffmanCodec codec;
+    private final int blockSize;
+    private final Executor executor;
+
+    /**
+     * Creates an encoder with the default block size that runs on the common fork-join pool.
+     *
+     * @param huffman the encoding to use
+     * @throws IllegalArgumentException if huffman is null
+     */
+    public BlockEncoder(Huffman huffman) {
+        this(huffman, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param huffman the encoding to use
+     * @param blockSize the number of chars per block
+     * @param executor runs the encoding of each block
+     * @throws IllegalArgumentException if huffman or executor is null, or blockSize is not
+     * positive
+     */
+    public BlockEncoder(Huffman huffman, int blockSize, Executor executor) {
+        if (huffman == null) {
+            throw new IllegalArgumentException("huffman null");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("non-positive block size");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor null");
+        }
+        codec = huffman.getCodec();
+        this.blockSize = blockSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Compresses the input, one block per task.
+     *
+     * @param input the string to compress, can be the empty string
+     * @return the packed encoding of input and its block index
+     * @throws IllegalArgumentException if the input is null or contains characters that are not
+     * compressible
+     */
+    public EncodedBlocks encode(final String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        int blocks = (input.length() + blockSize - 1) / blockSize;
+        List<FutureTask<BitWriter>> tasks = new ArrayList<FutureTask<BitWriter>>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            final int from = b * blockSize;
+            final int to = Math.min(input.length(), from + blockSize);
+            FutureTask<BitWriter> task = new FutureTask<BitWriter>(new Callable<BitWriter>() {
+                @Override
+                public BitWriter call() {
+                    BitWriter w = new BitWriter((to - from) / 2);
+                    codec.encode(input, from, to, w);
+                    return w;
+                }
+            });
+            tasks.add(task);
+            //the last block is encoded on this thread, which would otherwise just wait
+            if (b < blocks - 1) {
+                executor.execute(task);
+            }
+        }
+        if (blocks > 0) {
+            tasks.get(blocks - 1).run();
+        }
+
+        BitWriter[] parts = new BitWriter[blocks];
+        long[] offsets = new long[blocks];
+        int[] symbols = new int[blocks];
+        long bitLength = 0;
+        for (int b = 0; b < blocks; b++) {
+            parts[b] = join(tasks.get(b));
+            offsets[b] = bitLength;
+            symbols[b] = Math.min(input.length() - b * blockSize, blockSize);
+            bitLength += parts[b].bitLength();
+        }
+        if (bitLength / 8 >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("encoding too long for a byte array");
+        }
+        BitWriter out = new BitWriter((int) (bitLength / 8) + 1);
+        for (BitWriter part : parts) {
+            out.append(part);
+        }
+        return new EncodedBlocks(out.toByteArray(), bitLength, offsets, symbols);
+    }
+
+    //waits for a block, rethrowing what the block threw
+    static <T> T join(FutureTask<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a block", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Packs variable-length codes straight into a {@link ByteBuffer}, heap or direct, most
+ * significant bit first, in the layout of {@link BitWriter}. Whole 64-bit words are stored at
+ * once. The caller makes sure the buffer has room for every bit written.
+ */
+class BufferBitWriter {
+    private final ByteBuffer out;
+    private int pos;
+    //pending bits that do not fill a whole word yet, right aligned
+    private long acc;
+    private int accBits;
+
+    /**
+     * @param out  the buffer to write to, starting at its position
+     */
+    BufferBitWriter(ByteBuffer out) {
+        //duplicate() resets the byte order to big endian, which putLong relies on
+        this.out = out.duplicate();
+        pos = out.position();
+    }
+
+    /**
+     * Appends the low {@code length} bits of {@code code}, highest bit first.
+     *
+     * @param code  the bits to append, no bits may be set above {@code length}
+     * @param length  the number of bits to append, between 0 and 64
+     */
+    void write(long code, int length) {
+        if (length > 56) {
+            write(code >>> 32, length - 32);
+            write(code & 0xFFFFFFFFL, 32);
+            return;
+        }
+        int free = Long.SIZE - accBits;
+        if (length < free) {
+            acc = (acc << length) | code;
+            accBits += length;
+        } else {
+            int rest = length - free;
+            out.putLong(pos, (acc << free) | (code >>> rest));
+            pos += 8;
+            acc = code & ((1L << rest) - 1);
+            accBits = rest;
+        }
+    }
+
+    /**
+     * Writes out the pending bits, padding the last byte with zeroes.
+     *
+     * @return  the index just past the last byte written
+     */
+    int finish() {
+        for (int shift = accBits - 8; shift > -8; shift -= 8) {
+            out.put(pos++, (byte) (shift >= 0 ? acc >>> shift : acc << -shift));
+        }
+        acc = 0;
+        accBits = 0;
+        return pos;
+    }
+}
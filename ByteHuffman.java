@@ -0,0 +1,255 @@
+import java.util.Arrays;
+
+/**
+ * Huffman coding specialized to byte symbols, for binary data that would otherwise be widened
+ * into chars. Counts, codes and code lengths are plain 256-entry arrays indexed by the unsigned
+ * byte value, and decoding writes straight into a {@code byte[]}.
+ *
+ * Codes are canonical and limited in length with package-merge, by default to 15 bits as in
+ * deflate, which keeps the decode tables to the primary table and one small secondary level.
+ * The limit only costs compression on pathologically skewed counts.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class ByteHuffman {
+    /** Number of byte values. */
+    public static final int ALPHABET_SIZE = 256;
+    /** Longest code used when no limit is given. */
+    public static final int DEFAULT_MAX_CODE_LENGTH = 15;
+
+    //indexed by unsigned byte value, a length of 0 marks a byte outside the alphabet
+    private final long[] codeBits = new long[ALPHABET_SIZE];
+    private final byte[] codeLengths = new byte[ALPHABET_SIZE];
+    private final int maxCodeLength;
+    private final double expectedLength;
+    private final DecodeTable decodeTable;
+
+    /**
+     * Builds the code from the byte frequencies of a seed.
+     *
+     * @param seed the bytes from which to build the encoding
+     * @throws IllegalArgumentException if seed is null, or has fewer than 2 distinct bytes
+     */
+    public ByteHuffman(byte[] seed) {
+        this(countsOf(seed), DEFAULT_MAX_CODE_LENGTH);
+    }
+
+    /**
+     * @param counts the frequency of each byte value, indexed by unsigned value; bytes with a
+     * count of 0 are not in the alphabet
+     * @throws IllegalArgumentException if counts is null, does not have 256 entries, has negative
+     * entries or fewer than 2 positive ones
+     */
+    public ByteHuffman(long[] counts) {
+        this(counts, DEFAULT_MAX_CODE_LENGTH);
+    }
+
+    /**
+     * @param counts the frequency of each byte value, indexed by unsigned value; bytes with a
+     * count of 0 are not in the alphabet
+     * @param maxCodeLength the longest code allowed, in bits
+     * @throws IllegalArgumentException if counts is null, does not have 256 entries, has negative
+     * entries or fewer than 2 positive ones, or if maxCodeLength is larger than 57, the longest
+     * code the decode tables handle, or too small for the size of the alphabet
+     */
+    public ByteHuffman(long[] counts, int maxCodeLength) {
+        if (counts == null) {
+            throw new IllegalArgumentException("counts null");
+        }
+        if (counts.length != ALPHABET_SIZE) {
+            throw new IllegalArgumentException("counts must have 256 entries");
+        }
+        int n = 0;
+        for (long count : counts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("negative count");
+            }
+            if (count > 0) {
+                n++;
+            }
+        }
+        if (n < 2) {
+            throw new IllegalArgumentException("alphabet of fewer than 2 bytes");
+        }
+        if (maxCodeLength > DecodeTable.MAX_CODE_LENGTH
+                || maxCodeLength < 32 - Integer.numberOfLeadingZeros(n - 1)) {
+            throw new IllegalArgumentException("max code length out of range");
+        }
+
+        char[] symbols = new char[n];
+        long[] weights = new long[n];
+        long totalWeight = 0;
+        int k = 0;
+        for (int b = 0; b < ALPHABET_SIZE; b++) {
+            if (counts[b] > 0) {
+                symbols[k] = (char) b;
+                weights[k++] = counts[b];
+                totalWeight += counts[b];
+            }
+        }
+        int[] lengths = PackageMerge.codeLengths(weights, maxCodeLength);
+        long[] codes = CanonicalCode.assign(lengths);
+        int maxLength = 0;
+        long weightedLength = 0;
+        for (int i = 0; i < n; i++) {
+            codeBits[symbols[i]] = codes[i];
+            codeLengths[symbols[i]] = (byte) lengths[i];
+            maxLength = Math.max(maxLength, lengths[i]);
+            weightedLength += weights[i] * lengths[i];
+        }
+        this.maxCodeLength = maxLength;
+        expectedLength = weightedLength / (double) totalWeight;
+        decodeTable = new DecodeTable(symbols, codes, lengths);
+    }
+
+    private static long[] countsOf(byte[] seed) {
+        if (seed == null) {
+            throw new IllegalArgumentException("seed is null");
+        }
+        long[] counts = new long[ALPHABET_SIZE];
+        for (byte b : seed) {
+            counts[b & 0xFF]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Computes the number of bits the encoding of the input takes, without encoding it.
+     *
+     * @param input the bytes to measure
+     * @param off the index of the first byte
+     * @param len the number of bytes
+     * @return the length in bits of the encoding of input[off, off + len)
+     * @throws IllegalArgumentException if the input is null, the range is out of bounds, or the
+     * input contains bytes that are not compressible
+     */
+    public long encodedLength(byte[] input, int off, int len) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        if (off < 0 || len < 0 || off > input.length - len) {
+            throw new IllegalArgumentException("range out of bounds");
+        }
+        long bitLength = 0;
+        for (int i = off; i < off + len; i++) {
+            int codeLength = codeLengths[input[i] & 0xFF];
+            if (codeLength == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            bitLength += codeLength;
+        }
+        return bitLength;
+    }
+
+    /**
+     * Compresses the input into packed bits, eight to a byte, most significant bit first. The last
+     * byte is padded with zeroes; use {@link #encodedLength(byte[], int, int)} to get the exact
+     * number of bits for decompression.
+     *
+     * @param input the bytes to compress
+     * @return the packed encoding of input
+     * @throws IllegalArgumentException if the input is null or contains bytes that are not
+     * compressible
+     */
+    public byte[] compress(byte[] input) {
+        return compress(input, 0, input == null ? 0 : input.length);
+    }
+
+    /**
+     * Compresses input[off, off + len), like {@link #compress(byte[])}.
+     *
+     * @param input the bytes to compress
+     * @param off the index of the first byte
+     * @param len the number of bytes
+     * @return the packed encoding of the range
+     * @throws IllegalArgumentException if the input is null, the range is out of bounds, or the
+     * input contains bytes that are not compressible
+     */
+    public byte[] compress(byte[] input, int off, int len) {
+        long bitLength = encodedLength(input, off, len);
+        BitWriter w = new BitWriter((int) Math.min(bitLength / 8 + 1, Integer.MAX_VALUE - 8));
+        for (int i = off; i < off + len; i++) {
+            int b = input[i] & 0xFF;
+            w.write(codeBits[b], codeLengths[b]);
+        }
+        return w.toByteArray();
+    }
+
+    /**
+     * Decompresses packed bits, as produced by {@link #compress(byte[])}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the start of input
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the input is null, if bitLength is negative or larger
+     * than the input, or if the bits are not decodable
+     */
+    public byte[] decompress(byte[] input, long bitLength) {
+        BitReader in = readerOf(input, bitLength);
+        byte[] out = new byte[(int) Math.min(bitLength / maxCodeLength + 16, Integer.MAX_VALUE - 8)];
+        int size = 0;
+        while (in.remaining() > 0) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, (int) Math.min(2L * out.length, Integer.MAX_VALUE - 8));
+            }
+            size += decodeTable.decode(in, out, size, out.length - size);
+        }
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Decompresses packed bits into a caller-supplied array, for when the decoded length is known.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the start of input
+     * @param out the array to write the decoded bytes to
+     * @param off the index in out to write the first byte at
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the input or out is null, if bitLength is negative or
+     * larger than the input, if off is out of bounds, if the bits are not decodable, or if they
+     * decode to more bytes than fit in out
+     */
+    public int decompress(byte[] input, long bitLength, byte[] out, int off) {
+        BitReader in = readerOf(input, bitLength);
+        if (out == null) {
+            throw new IllegalArgumentException("out null");
+        }
+        if (off < 0 || off > out.length) {
+            throw new IllegalArgumentException("offset out of bounds");
+        }
+        int n = decodeTable.decode(in, out, off, out.length - off);
+        if (in.remaining() > 0) {
+            throw new IllegalArgumentException("output too small");
+        }
+        return n;
+    }
+
+    private static BitReader readerOf(byte[] input, long bitLength) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        if (bitLength < 0 || bitLength > 8L * input.length) {
+            throw new IllegalArgumentException("bitLength out of range");
+        }
+        return new BitReader(input, bitLength);
+    }
+
+    /**
+     * @return the expected encoding length of a byte drawn with the frequencies of the code
+     */
+    public double expectedEncodingLength() {
+        return expectedLength;
+    }
+
+    /**
+     * @param b a byte of the alphabet
+     * @return the length of the code of b in bits
+     * @throws IllegalArgumentException if b is not in the alphabet
+     */
+    public int codeLength(byte b) {
+        int len = codeLengths[b & 0xFF];
+        if (len == 0) {
+            throw new IllegalArgumentException("input not in alphabet");
+        }
+        return len;
+    }
+}
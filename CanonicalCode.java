@@ -0,0 +1,62 @@
+/**
+ * Canonical prefix codes, which are fully determined by the code length of each symbol: symbols
+ * are ordered by code length and then by symbol, and take consecutive codes in that order, with
+ * the code of the next length continuing from the last code shifted left. A canonical code can
+ * therefore be shared as its code lengths alone.
+ */
+final class CanonicalCode {
+    /** Longest code length accepted in serialized models, so Kraft sums fit in a long. */
+    static final int MAX_LENGTH = 62;
+
+    private CanonicalCode() {
+    }
+
+    /**
+     * @param lengths  the code length of each symbol, with symbols in increasing order
+     * @return  the canonical code of each symbol, right aligned
+     */
+    static long[] assign(int[] lengths) {
+        int maxLength = 0;
+        for (int len : lengths) {
+            maxLength = Math.max(maxLength, len);
+        }
+        int[] lengthCounts = new int[maxLength + 1];
+        for (int len : lengths) {
+            lengthCounts[len]++;
+        }
+        long[] nextCode = new long[maxLength + 1];
+        long code = 0;
+        for (int len = 1; len <= maxLength; len++) {
+            code = (code + lengthCounts[len - 1]) << 1;
+            nextCode[len] = code;
+        }
+        long[] codes = new long[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            codes[i] = nextCode[lengths[i]]++;
+        }
+        return codes;
+    }
+
+    /**
+     * @param lengths  code lengths of at least two symbols
+     * @return  true if every length is between 1 and {@link #MAX_LENGTH} and the lengths describe
+     *          a complete code, one where every bit sequence starts with a code
+     */
+    static boolean isComplete(int[] lengths) {
+        if (lengths.length < 2) {
+            return false;
+        }
+        //sum of 2^(MAX_LENGTH - len) is 2^MAX_LENGTH exactly when Kraft's sum is 1
+        long kraft = 0;
+        for (int len : lengths) {
+            if (len < 1 || len > MAX_LENGTH) {
+                return false;
+            }
+            kraft += 1L << (MAX_LENGTH - len);
+            if (kraft > 1L << MAX_LENGTH) {
+                return false;
+            }
+        }
+        return kraft == 1L << MAX_LENGTH;
+    }
+}
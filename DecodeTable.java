@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ * Lookup tables that decode a prefix code several bits at a time instead of one tree edge per
+ * bit. The primary table is indexed by the next {@code primaryBits} bits of input. Each of its
+ * entries either holds up to three complete symbols whose codes fit in those bits, or links to a
+ * secondary table, indexed by the bits that follow, for codes longer than {@code primaryBits}.
+ * Secondary tables are at most 8 bits wide and link on to further tables for longer codes, so
+ * memory grows with the number of symbols rather than exponentially with the longest code.
+ *
+ * Entries are packed into longs:
+ * <pre>
+ *   bits  0-5   bits consumed by all symbols in the entry
+ *   bits  6-7   number of symbols, 0 for a link to a secondary table
+ *   bits  8-13  bits consumed by the first symbol, or index width of the linked table
+ *   bits 16-63  up to three 16 bit symbols, or the offset of the linked table
+ * </pre>
+ */
+final class DecodeTable {
+    /** Longest code the tables handle, bounded by the bits {@link BitReader#peek()} guarantees. */
+    static final int MAX_CODE_LENGTH = 57;
+    private static final int MAX_PRIMARY_BITS = 11;
+    private static final int MAX_SECONDARY_BITS = 8;
+
+    private final int primaryBits;
+    //primary table followed by all secondary tables
+    private long[] table;
+    //entries of table in use, only while building
+    private int size;
+
+    /**
+     * Builds the tables for a complete prefix code.
+     *
+     * @param symbols  the symbols of the code
+     * @param codes  the code of each symbol, right aligned
+     * @param lengths  the code length of each symbol, at most {@link #MAX_CODE_LENGTH}
+     */
+    DecodeTable(char[] symbols, long[] codes, int[] lengths) {
+        int maxLength = 0;
+        for (int len : lengths) {
+            maxLength = Math.max(maxLength, len);
+        }
+        //short codes only need enough bits for three symbols per lookup
+        primaryBits = Math.min(MAX_PRIMARY_BITS, 3 * maxLength);
+
+        table = new long[1 << primaryBits];
+        size = table.length;
+        long[] aligned = new long[symbols.length];
+        int[] members = new int[symbols.length];
+        for (int s = 0; s < symbols.length; s++) {
+            aligned[s] = codes[s] << (64 - lengths[s]);
+            members[s] = s;
+        }
+        fill(symbols, aligned, lengths, members, 0, members.length, 0, 0, primaryBits);
+        if (size < table.length) {
+            table = Arrays.copyOf(table, size);
+        }
+        packPrimary();
+    }
+
+    /*
+     * Fills the table at offset, indexed by the width bits of the code after the first consumed
+     * bits, with the symbols members[from, to), whose codes all share those consumed bits. Codes
+     * that do not end within the table are grouped by index into linked tables of at most
+     * MAX_SECONDARY_BITS, each only as wide as the longest code of its group needs, so a deep
+     * code costs a chain of small tables rather than one table exponential in its length.
+     */
+    private void fill(char[] symbols, long[] aligned, int[] lengths, int[] members, int from,
+                      int to, int offset, int consumed, int width) {
+        int end = consumed + width;
+        int[] groupStart = new int[(1 << width) + 1];
+        int[] groupMax = new int[1 << width];
+        int longCodes = 0;
+        for (int m = from; m < to; m++) {
+            int s = members[m];
+            int len = lengths[s];
+            int index = (int) ((aligned[s] << consumed) >>> (64 - width));
+            if (len <= end) {
+                long entry = len | (1L << 6) | ((long) len << 8) | ((long) symbols[s] << 16);
+                for (int i = 0; i < 1 << (end - len); i++) {
+                    table[offset + index + i] = entry;
+                }
+            } else {
+                groupStart[index + 1]++;
+                groupMax[index] = Math.max(groupMax[index], len);
+                longCodes++;
+            }
+        }
+        if (longCodes == 0) {
+            return;
+        }
+
+        //counting sort of the long codes by index, so each group is a contiguous range
+        for (int index = 0; index < groupMax.length; index++) {
+            groupStart[index + 1] += groupStart[index];
+        }
+        int[] grouped = new int[longCodes];
+        int[] next = Arrays.copyOf(groupStart, groupMax.length);
+        for (int m = from; m < to; m++) {
+            int s = members[m];
+            if (lengths[s] > end) {
+                grouped[next[(int) ((aligned[s] << consumed) >>> (64 - width))]++] = s;
+            }
+        }
+        for (int index = 0; index < groupMax.length; index++) {
+            if (groupMax[index] == 0) {
+                continue;
+            }
+            int subWidth = Math.min(MAX_SECONDARY_BITS, groupMax[index] - end);
+            int subOffset = size;
+            size += 1 << subWidth;
+            if (size > table.length) {
+                table = Arrays.copyOf(table, Math.max(size, 2 * table.length));
+            }
+            table[offset + index] = ((long) subWidth << 8) | ((long) subOffset << 16);
+            fill(symbols, aligned, lengths, grouped, groupStart[index], groupStart[index + 1],
+                    subOffset, end, subWidth);
+        }
+    }
+
+    private void packPrimary() {
+        //append the second and third symbol wherever their codes also fit in the primary bits
+        int mask = (1 << primaryBits) - 1;
+        for (int extra = 1; extra <= 2; extra++) {
+            for (int i = 0; i <= mask; i++) {
+                long entry = table[i];
+                int count = (int) (entry >>> 6) & 3;
+                int used = (int) entry & 63;
+                if (count != extra) {
+                    continue;
+                }
+                //only the first symbol of the following slot is used, so slots that were
+                //already extended in this pass are still safe to read
+                long next = table[(i << used) & mask];
+                int nextLength = (int) (next >>> 8) & 63;
+                if (((next >>> 6) & 3) == 0 || used + nextLength > primaryBits) {
+                    continue;
+                }
+                long symbol = (next >>> 16) & 0xFFFF;
+                table[i] = (entry & ~63L & ~(3L << 6)) | (used + nextLength)
+                        | ((long) (count + 1) << 6) | (symbol << (16 + 16 * count));
+            }
+        }
+    }
+
+    //follows the links from a primary entry down to the entry of the code at the front of window
+    private long follow(long entry, long window) {
+        int consumed = primaryBits;
+        do {
+            int width = (int) (entry >>> 8) & 63;
+            if (width == 0) {
+                //an unfilled entry, only possible for an incomplete code
+                throw new IllegalArgumentException("invalid");
+            }
+            entry = table[(int) (entry >>> 16) + (int) ((window << consumed) >>> (64 - width))];
+            consumed += width;
+        } while (((entry >>> 6) & 3) == 0);
+        return entry;
+    }
+
+    /*
+     * Looks up the entry for the codes at the front of in and skips the bits of the symbols taken
+     * from it, at most room of them. Returns the entry with its count set to the number taken, 0
+     * once the input is exhausted.
+     */
+    private long next(BitReader in, int room) {
+        long remaining = in.remaining();
+        if (remaining <= 0) {
+            return 0;
+        }
+        long window = in.peek();
+        long entry = table[(int) (window >>> (64 - primaryBits))];
+        int count = (int) (entry >>> 6) & 3;
+        if (count == 0) {
+            entry = follow(entry, window);
+            count = 1;
+        }
+        int used = (int) entry & 63;
+        if (used > remaining || count > room) {
+            //near the end of the input or output, take one symbol at a time
+            used = (int) (entry >>> 8) & 63;
+            if (used > remaining) {
+                throw new IllegalArgumentException("invalid");
+            }
+            count = 1;
+        }
+        in.skip(used);
+        return (entry & ~(3L << 6)) | ((long) count << 6);
+    }
+
+    /**
+     * Decodes symbols until {@code len} symbols have been written or the input is exhausted.
+     *
+     * @param in  the bits to decode, advanced past the decoded codes
+     * @param out  the array to write symbols to
+     * @param off  the index in out to write the first symbol at
+     * @param len  the maximum number of symbols to write
+     * @return  the number of symbols written
+     * @throws IllegalArgumentException  if the input ends in the middle of a code
+     */
+    int decode(BitReader in, char[] out, int off, int len) {
+        int n = 0;
+        while (n < len) {
+            long entry = next(in, len - n);
+            int count = (int) (entry >>> 6) & 3;
+            if (count == 0) {
+                break;
+            }
+            out[off + n++] = (char) (entry >>> 16);
+            if (count > 1) {
+                out[off + n++] = (char) (entry >>> 32);
+                if (count > 2) {
+                    out[off + n++] = (char) (entry >>> 48);
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Decodes symbols that are all bytes (0 to 255) until {@code len} bytes have been written or
+     * the input is exhausted, like {@link #decode(BitReader, char[], int, int)}.
+     *
+     * @param in  the bits to decode, advanced past the decoded codes
+     * @param out  the array to write bytes to
+     * @param off  the index in out to write the first byte at
+     * @param len  the maximum number of bytes to write
+     * @return  the number of bytes written
+     * @throws IllegalArgumentException  if the input ends in the middle of a code
+     */
+    int decode(BitReader in, byte[] out, int off, int len) {
+        int n = 0;
+        while (n < len) {
+            long entry = next(in, len - n);
+            int count = (int) (entry >>> 6) & 3;
+            if (count == 0) {
+                break;
+            }
+            out[off + n++] = (byte) (entry >>> 16);
+            if (count > 1) {
+                out[off + n++] = (byte) (entry >>> 32);
+                if (count > 2) {
+                    out[off + n++] = (byte) (entry >>> 48);
+                }
+            }
+        }
+        return n;
+    }
+}
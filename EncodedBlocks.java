@@ -0,0 +1,150 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The result of a block-parallel compression: one packed bit stream holding the encodings of
+ * consecutive blocks of the input, plus an index of where each block starts. The stream is the
+ * same as {@link Huffman#compressToBytes(String)} would produce for the whole input, so it can be
+ * decoded serially as well.
+ *
+ * {@link #toByteArray()} serializes it as a container, all numbers big endian:
+ * <pre>
+ *   int    MAGIC
+ *   int    block count n
+ *   long   total bit length
+ *   n x    (long bit offset, int symbol count)
+ *   bytes  the packed bits, (bit length + 7) / 8 of them
+ * </pre>
+ */
+public final class EncodedBlocks {
+    /** First four bytes of a serialized container, "HUFB". */
+    static final int MAGIC = 0x48554642;
+
+    private final byte[] data;
+    private final long bitLength;
+    private final long[] blockOffsets;
+    private final int[] blockSymbols;
+
+    EncodedBlocks(byte[] data, long bitLength, long[] blockOffsets, int[] blockSymbols) {
+        this.data = data;
+        this.bitLength = bitLength;
+        this.blockOffsets = blockOffsets;
+        this.blockSymbols = blockSymbols;
+    }
+
+    /**
+     * @return the packed bits of every block, most significant bit first. Not copied, do not
+     * modify.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the total number of meaningful bits in {@link #getData()}
+     */
+    public long getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * @param block the index of the block
+     * @return the bit at which the encoding of the block starts
+     */
+    public long getBlockOffset(int block) {
+        return blockOffsets[block];
+    }
+
+    /**
+     * @param block the index of the block
+     * @return the number of symbols encoded in the block
+     */
+    public int getBlockSymbols(int block) {
+        return blockSymbols[block];
+    }
+
+    /**
+     * @return the total number of symbols encoded in all blocks
+     */
+    public long getSymbolCount() {
+        long total = 0;
+        for (int n : blockSymbols) {
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * @return this container serialized in the format described above
+     */
+    public byte[] toByteArray() {
+        int header = 16 + 12 * blockOffsets.length;
+        ByteBuffer out = ByteBuffer.allocate(header + data.length);
+        out.putInt(MAGIC);
+        out.putInt(blockOffsets.length);
+        out.putLong(bitLength);
+        for (int b = 0; b < blockOffsets.length; b++) {
+            out.putLong(blockOffsets[b]);
+            out.putInt(blockSymbols[b]);
+        }
+        out.put(data);
+        return out.array();
+    }
+
+    /**
+     * Reads a container written by {@link #toByteArray()}.
+     *
+     * @param bytes the serialized container
+     * @return the container
+     * @throws IllegalArgumentException if bytes is null or not a well-formed container
+     */
+    public static EncodedBlocks fromByteArray(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes null");
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            if (in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("not a block container");
+            }
+            int blocks = in.getInt();
+            long bitLength = in.getLong();
+            if (blocks < 0 || blocks > in.remaining() / 12 || bitLength < 0
+                    || (bitLength + 7) / 8 != in.remaining() - 12L * blocks) {
+                throw new IllegalArgumentException("corrupt block container header");
+            }
+            long[] offsets = new long[blocks];
+            int[] symbols = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                offsets[b] = in.getLong();
+                symbols[b] = in.getInt();
+                if (offsets[b] < (b == 0 ? 0 : offsets[b - 1]) || offsets[b] > bitLength
+                        || symbols[b] < 0) {
+                    throw new IllegalArgumentException("corrupt block index");
+                }
+            }
+            if (blocks == 0 ? bitLength != 0 : offsets[0] != 0) {
+                throw new IllegalArgumentException("corrupt block index");
+            }
+            //every code takes at least one bit, so this bounds the total to the bit length
+            for (int b = 0; b < blocks; b++) {
+                long end = b + 1 < blocks ? offsets[b + 1] : bitLength;
+                if (symbols[b] > end - offsets[b]) {
+                    throw new IllegalArgumentException("corrupt block index");
+                }
+            }
+            byte[] data = new byte[in.remaining()];
+            in.get(data);
+            return new EncodedBlocks(data, bitLength, offsets, symbols);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated block container", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts how often each char occurs in a text, into a primitive histogram indexed by char. This
+ * avoids boxing a {@code Character} and an {@code Integer} for every char of large seeds. Texts
+ * of at least {@link #PARALLEL_THRESHOLD} chars are split into chunks that are counted on the
+ * common fork-join pool, each into its own histogram, and summed at the end.
+ */
+final class FrequencyCounter {
+    /** Number of distinct char values, the length of every histogram. */
+    static final int ALPHABET_SIZE = Character.MAX_VALUE + 1;
+    /** Texts shorter than this are counted on the calling thread. */
+    static final int PARALLEL_THRESHOLD = 1 << 22;
+    //smallest chunk worth a histogram of its own
+    private static final int MIN_CHUNK = 1 << 20;
+
+    private FrequencyCounter() {
+    }
+
+    /**
+     * @param text  the text to count
+     * @return  the number of occurrences of each char, indexed by char
+     */
+    static int[] count(CharSequence text) {
+        if (text.length() >= PARALLEL_THRESHOLD) {
+            //a couple of chunks per worker keeps them busy without a histogram per megabyte
+            int parallelism = ForkJoinPool.getCommonPoolParallelism();
+            return countParallel(text, Math.max(MIN_CHUNK, text.length() / (2 * parallelism)));
+        }
+        int[] counts = new int[ALPHABET_SIZE];
+        count(text, 0, text.length(), counts);
+        return counts;
+    }
+
+    /**
+     * Counts {@code text} on the common fork-join pool, in chunks of at most {@code chunk} chars.
+     */
+    static int[] countParallel(CharSequence text, int chunk) {
+        return ForkJoinPool.commonPool().invoke(new CountTask(text, 0, text.length(), chunk));
+    }
+
+    /**
+     * Adds the occurrences of each char in {@code text[from, to)} to {@code counts}.
+     */
+    static void count(CharSequence text, int from, int to, int[] counts) {
+        if (text instanceof String) {
+            //charAt on a String avoids the interface call per char
+            String s = (String) text;
+            for (int i = from; i < to; i++) {
+                counts[s.charAt(i)]++;
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                counts[text.charAt(i)]++;
+            }
+        }
+    }
+
+    private static final class CountTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        CountTask(CharSequence text, int from, int to, int chunk) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= chunk) {
+                int[] counts = new int[ALPHABET_SIZE];
+                count(text, from, to, counts);
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(text, from, mid, chunk);
+            left.fork();
+            int[] counts = new CountTask(text, mid, to, chunk).compute();
+            int[] leftCounts = left.join();
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                counts[c] += leftCounts[c];
+            }
+            return counts;
+        }
+    }
+}
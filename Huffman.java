@@ -1,6 +1,9 @@
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Map;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**
@@ -9,13 +12,39 @@ import java.util.*;
  * characters should result in the throwing of an {@link IllegalArgumentException} if used in {@link
  * #compress(String)}.
  *
+ * The tree and code tables live in an immutable {@link HuffmanCodec}; this class adds the
+ * compression statistics on top, kept in lock-free counters. An instance can be shared by
+ * concurrent threads once constructed.
+ *
  */
 public class Huffman {
-    private List<String> inputs;
-    private List<String> outputs;
-    private Map<Character, Integer> alph;
+    //running totals over every compress call, for compressionRatio
+    private final LongAdder compressCalls = new LongAdder();
+    private final LongAdder inputChars = new LongAdder();
+    private final LongAdder outputBits = new LongAdder();
+    private final HuffmanCodec codec;
 
     private MinPQ<Node> queue;
+    //sum of all letter counts
+    private long totalWeight;
+    //number of merged nodes created so far, their tie-break order
+    private int mergedNodes;
+
+    /** First four bytes of a serialized model, "HUFM". */
+    static final int MODEL_MAGIC = 0x4855464D;
+
+    /**
+     * Strategies for merging the leaves into a tree. Both produce the same tree.
+     */
+    public enum Construction {
+        /** Repeatedly merges the two smallest nodes of a {@link MinPQ}, in O(n log n). */
+        HEAP,
+        /**
+         * Sorts the leaves, then merges from two FIFO queues. The sort, and so the O(n log n), is
+         * skipped when the leaves are already in order, see {@link #Huffman(char[], long[])}.
+         */
+        TWO_QUEUE
+    }
 
     //helpers to test minPQ;
 
@@ -23,18 +52,39 @@ public class Huffman {
         return queue;
     }
 
-    //inner class, node
-    class Node implements Comparable<Node> {
-        private double freq;
+    //tree node, static so a shared codec's tree does not keep the building Huffman alive
+    static class Node implements Comparable<Node> {
+        //exact count; only normalized by totalWeight when reported through getFreq
+        private long weight;
+        //sum of all letter counts of the tree
+        private final long totalWeight;
         private char letter;
         private Node leftChild;
         private Node rightChild;
+        /*
+         * Leaves order by letter and come before every merged node, which order by creation.
+         * Merged nodes are created in increasing order, so this matches comparing their
+         * smallest leaves.
+         */
+        private final long tieBreak;
 
-        Node(double freq, char letter) {
-            this.freq = freq;
+        Node(long weight, char letter, long totalWeight) {
+            this.weight = weight;
+            this.totalWeight = totalWeight;
             this.letter = letter;
             leftChild = null;
             rightChild = null;
+            tieBreak = letter;
+        }
+
+        //order is the number of merged nodes created before this one
+        Node(Node leftChild, Node rightChild, int order) {
+            this.weight = leftChild.weight + rightChild.weight;
+            this.totalWeight = leftChild.totalWeight;
+            this.letter = (char) -1;
+            this.leftChild = leftChild;
+            this.rightChild = rightChild;
+            tieBreak = Character.MAX_VALUE + 1L + order;
         }
 
         //public functions to modify the lc and rc info of the node
@@ -52,49 +102,19 @@ public class Huffman {
         }
 
         public int compareTo(Node n) {
-            //if both leaf, break the tie by comparing freq, then letter size
-            if (this.getFreq() < n.getFreq()) {
-                return -1;
-            } else if (this.getFreq() > n.getFreq()) {
-                return 1;
-            } else {
-                if (this.isLeaf() && n.isLeaf()) {
-                    if ((int) this.getLetter() < (int) n.getLetter()) {
-                        return -1;
-                    } else if ((int) this.getLetter() > (int) n.getLetter()) {
-                        return 1;
-                    } else {
-                        return 0;
-                    }
-                    //leaf is bigger than node
-                    //2 nodes: recurse until its smallest leaf, compare
-                } else if (this.isLeaf() && !n.isLeaf()) {
-                    return -1;
-                } else if (!this.isLeaf() && n.isLeaf()) {
-                    return 1;
-                } else {
-                    Node mySmallest = this.getSmallestLeaf();
-                    Node nSmallest = n.getSmallestLeaf();
-                    return mySmallest.compareTo(nSmallest);
-                }
+            //lighter first, equal weights fall back to the precomputed tie-break key
+            if (this.weight != n.weight) {
+                return this.weight < n.weight ? -1 : 1;
             }
+            return Long.compare(this.tieBreak, n.tieBreak);
         }
 
-        Node getSmallestLeaf() {
-            return getSmallestLeafHelper(this);
-        }
-
-        //helper to find the smallest child
-        Node getSmallestLeafHelper(Node n) {
-            if (n.isLeaf()) {
-                return n;
-            } else {
-                return n.getLeftChild();
-            }
+        long getWeight() {
+            return weight;
         }
 
         double getFreq() {
-            return freq;
+            return weight / (double) totalWeight;
         }
         char getLetter() {
             return letter;
@@ -125,66 +145,54 @@ public class Huffman {
      * 1 character
      */
     public Huffman(String seed) {
+        this(seed, Construction.HEAP);
+    }
+
+    /**
+     * Constructs a {@code Huffman} instance from a seed string using the given construction
+     * strategy. Every strategy produces the same tree.
+     *
+     * @param seed the String from which to build the encoding
+     * @param construction how to merge the nodes of the tree
+     * @throws IllegalArgumentException seed is null, seed is empty, resulting alphabet only has
+     * 1 character, or construction is null
+     */
+    public Huffman(String seed, Construction construction) {
         if (seed == null) {
             throw new IllegalArgumentException("seed is null");
         }
         if (seed.length() == 0) {
             throw new IllegalArgumentException("seed is empty");
         }
-        boolean allSame = true;
-        for (int i = 0; i < seed.length() - 1; i++) {
-            if (seed.charAt(i) != seed.charAt(i + 1)) {
-                allSame = false;
-                break;
+        int[] histogram = FrequencyCounter.count(seed);
+        int size = 0;
+        for (int count : histogram) {
+            if (count > 0) {
+                size++;
             }
         }
-        if (allSame) {
+        if (size < 2) {
             throw new IllegalArgumentException("seed creates an alphabet of 1 character");
         }
-
-        Map<Character, Integer> alphabet = createMapFromSeed(seed);
-        alph = alphabet;
-        inputs = new ArrayList<String>();
-        outputs = new ArrayList<String>();
-        //initialize queue
-        queue = new MinPQ<Node>();
-
-        Set<Map.Entry<Character, Integer>> setOfMappings = alphabet.entrySet();
-
-        //get the total num of letters
-        int numOfLetters = 0;
-        for (Map.Entry<Character, Integer> entry : setOfMappings) {
-            numOfLetters += entry.getValue();
-        }
-        for (Map.Entry<Character, Integer> entry : setOfMappings) {
-            /* initializing leaf nodes for each entry,
-            *putting each char as letters, and each int/total as freq
-            */
-            Node n = new Node(entry.getValue() / (double) numOfLetters, entry.getKey());
-            queue.add(n);
-        }
-
-        //using the pqueue to construct a binary tree
-        while (queue.size() > 1) {
-            Node n1 = queue.extractMin();
-            Node n2 = queue.extractMin();
-            Node parent = new Node(n1.getFreq() + n2.getFreq(), (char) -1);
-            parent.setLeftChild(n1);
-            parent.setRightChild(n2);
-            queue.add(parent);
+        char[] seedLetters = new char[size];
+        long[] seedCounts = new long[size];
+        int i = 0;
+        for (int c = 0; c < histogram.length; c++) {
+            if (histogram[c] > 0) {
+                seedLetters[i] = (char) c;
+                seedCounts[i++] = histogram[c];
+            }
         }
-
-
+        codec = build(seedLetters, seedCounts, construction);
     }
 
     //helper, need to test
     static Map<Character, Integer> createMapFromSeed(String seed) {
+        int[] histogram = FrequencyCounter.count(seed);
         Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
-        for (int i = 0; i < seed.length(); i++) {
-            if (alphabet.containsKey(seed.charAt(i))) {
-                alphabet.put(seed.charAt(i), alphabet.get(seed.charAt(i)) + 1);
-            } else {
-                alphabet.put(seed.charAt(i), 1);
+        for (int c = 0; c < histogram.length; c++) {
+            if (histogram[c] > 0) {
+                alphabet.put((char) c, histogram[c]);
             }
         }
         return alphabet;
@@ -200,50 +208,385 @@ public class Huffman {
      * or has any non-positive frequencies
      */
     public Huffman(Map<Character, Integer> alphabet) {
+        this(alphabet, Construction.HEAP);
+    }
+
+    /**
+     * Constructs a {@code Huffman} instance from a frequency map using the given construction
+     * strategy. Every strategy produces the same tree.
+     *
+     * @param alphabet a frequency map for characters in the alphabet
+     * @param construction how to merge the nodes of the tree
+     * @throws IllegalArgumentException if the alphabet is null, empty, has fewer than 2 characters,
+     * or has any non-positive frequencies, or if construction is null
+     */
+    public Huffman(Map<Character, Integer> alphabet, Construction construction) {
+        SortedMap<Character, Integer> sorted = checkedAlphabet(alphabet);
+        codec = build(lettersOf(sorted), countsOf(sorted), construction);
+    }
+
+    /**
+     * Constructs a {@code Huffman} instance from a frequency map whose codes are no longer than
+     * {@code maxCodeLength} bits. The code lengths are the cheapest ones within the limit, found
+     * with package-merge, so {@link #expectedEncodingLength()} only grows when the limit actually
+     * cuts the tree short. The codes are canonical, see {@link #canonical()}.
+     *
+     * @param alphabet a frequency map for characters in the alphabet
+     * @param maxCodeLength the longest code allowed, in bits
+     * @throws IllegalArgumentException if the alphabet is null, empty, has fewer than 2 characters,
+     * or has any non-positive frequencies, or if maxCodeLength is larger than 57, the longest
+     * code the decode tables handle, or too small for the size of the alphabet
+     */
+    public Huffman(Map<Character, Integer> alphabet, int maxCodeLength) {
+        SortedMap<Character, Integer> sorted = checkedAlphabet(alphabet);
+        if (maxCodeLength > DecodeTable.MAX_CODE_LENGTH
+                || maxCodeLength < 32 - Integer.numberOfLeadingZeros(sorted.size() - 1)) {
+            throw new IllegalArgumentException("max code length out of range");
+        }
+        long[] counts = countsOf(sorted);
+        codec = buildFromLengths(lettersOf(sorted), counts,
+                PackageMerge.codeLengths(counts, maxCodeLength));
+    }
+
+    /**
+     * Constructs a {@code Huffman} instance from letters and their counts with the two-queue
+     * construction. Letters may come in any order. When they come in increasing count, ties
+     * between equal counts in letter order, as a counting pass sorted by frequency produces, the
+     * leaves need no sorting and the tree is built in O(n). Counts skewed enough to need codes
+     * longer than 57 bits get the cheapest codes of at most 57 bits instead, found with
+     * package-merge.
+     *
+     * @param letters the alphabet, each letter once
+     * @param counts the count of each letter
+     * @throws IllegalArgumentException if letters or counts is null, they differ in length, there
+     * are fewer than 2 letters, a letter repeats, or any count is not positive
+     */
+    public Huffman(char[] letters, long[] counts) {
+        if (letters == null || counts == null) {
+            throw new IllegalArgumentException("alphabet null");
+        }
+        if (letters.length != counts.length) {
+            throw new IllegalArgumentException("letters and counts differ in length");
+        }
+        if (letters.length < 2) {
+            throw new IllegalArgumentException("alphabet empty");
+        }
+        //position + 1 of each letter, which also finds repeats
+        int[] slot = new int[FrequencyCounter.ALPHABET_SIZE];
+        for (int i = 0; i < letters.length; i++) {
+            if (counts[i] <= 0) {
+                throw new IllegalArgumentException("non-positive freq");
+            }
+            if (slot[letters[i]] != 0) {
+                throw new IllegalArgumentException("letter repeats");
+            }
+            slot[letters[i]] = i + 1;
+        }
+        //the codec wants the alphabet in letter order, one pass over the slots keeps this linear
+        char[] sortedLetters = new char[letters.length];
+        long[] sortedCounts = new long[letters.length];
+        int k = 0;
+        for (int c = 0; c < slot.length; c++) {
+            if (slot[c] != 0) {
+                sortedLetters[k] = (char) c;
+                sortedCounts[k++] = counts[slot[c] - 1];
+            }
+        }
+
+        queue = new MinPQ<Node>();
+        setTotalWeight(sortedCounts);
+        Node[] leaves = new Node[letters.length];
+        for (int i = 0; i < letters.length; i++) {
+            leaves[i] = new Node(counts[i], letters[i], totalWeight);
+        }
+        Node root = mergeSorted(leaves);
+        if (depth(root, leaves.length) > DecodeTable.MAX_CODE_LENGTH) {
+            //long counts can skew the tree past what the codes can hold, so limit them instead
+            codec = buildFromLengths(sortedLetters, sortedCounts,
+                    PackageMerge.codeLengths(sortedCounts, DecodeTable.MAX_CODE_LENGTH));
+        } else {
+            queue.add(root);
+            codec = new HuffmanCodec(sortedLetters, sortedCounts, root);
+        }
+    }
+
+    //depth of the deepest leaf, with an explicit stack for skewed trees
+    private static int depth(Node root, int leaves) {
+        Node[] nodes = new Node[leaves];
+        int[] depths = new int[leaves];
+        int top = 0;
+        nodes[top++] = root;
+        int max = 0;
+        while (top > 0) {
+            top--;
+            Node n = nodes[top];
+            int d = depths[top];
+            if (n.isLeaf()) {
+                max = Math.max(max, d);
+            } else {
+                nodes[top] = n.getRightChild();
+                depths[top++] = d + 1;
+                nodes[top] = n.getLeftChild();
+                depths[top++] = d + 1;
+            }
+        }
+        return max;
+    }
+
+    //the alphabet sorted by letter, so the leaves are created in the same order for equal maps
+    private static SortedMap<Character, Integer> checkedAlphabet(Map<Character, Integer> alphabet) {
         if (alphabet == null) {
             throw new IllegalArgumentException("alphabet null");
         }
         if (alphabet.size() < 2) {
             throw new IllegalArgumentException("alphabet empty");
         }
-        Collection<Integer> li = new ArrayList<Integer>();
-        for (Integer i : li = alphabet.values()) {
+        for (Integer i : alphabet.values()) {
             if (i <= 0) {
                 throw new IllegalArgumentException("non-positive freq");
             }
         }
-        alph = alphabet;
-        inputs = new ArrayList<String>();
-        outputs = new ArrayList<String>();
+        return new TreeMap<Character, Integer>(alphabet);
+    }
+
+    private static char[] lettersOf(SortedMap<Character, Integer> alphabet) {
+        char[] mapLetters = new char[alphabet.size()];
+        int i = 0;
+        for (Character c : alphabet.keySet()) {
+            mapLetters[i++] = c;
+        }
+        return mapLetters;
+    }
+
+    private static long[] countsOf(SortedMap<Character, Integer> alphabet) {
+        long[] mapCounts = new long[alphabet.size()];
+        int i = 0;
+        for (Integer count : alphabet.values()) {
+            mapCounts[i++] = count;
+        }
+        return mapCounts;
+    }
+
+    //get the total num of letters
+    private void setTotalWeight(long[] counts) {
+        totalWeight = 0;
+        for (long count : counts) {
+            totalWeight += count;
+        }
+    }
+
+    //creates the leaves and merges them into the tree, then derives the code table
+    private HuffmanCodec build(char[] letters, long[] counts, Construction construction) {
+        if (construction == null) {
+            throw new IllegalArgumentException("construction null");
+        }
 
         //initialize queue
         queue = new MinPQ<Node>();
-        Set<Map.Entry<Character, Integer>> setOfMappings = alphabet.entrySet();
+        setTotalWeight(counts);
+        Node[] leaves = new Node[letters.length];
+        for (int i = 0; i < letters.length; i++) {
+            /* initializing leaf nodes for each letter,
+            * with its count as weight
+            * */
+            leaves[i] = new Node(counts[i], letters[i], totalWeight);
+        }
 
-        //get the total num of letters
-        int numOfLetters = 0;
-        for (Map.Entry<Character, Integer> entry : setOfMappings) {
-            numOfLetters += entry.getValue();
+        if (construction == Construction.TWO_QUEUE) {
+            queue.add(mergeSorted(leaves));
+        } else {
+            for (Node n : leaves) {
+                queue.add(n);
+            }
+            //using the pqueue to construct a binary tree
+            while (queue.size() > 1) {
+                Node n1 = queue.extractMin();
+                Node n2 = queue.extractMin();
+                queue.add(merge(n1, n2));
+            }
         }
-        for (Map.Entry<Character, Integer> entry : setOfMappings) {
-            /* initializing leaf nodes for each entry,
-            * putting each char as letters, and each int/total as freq
-            * */
-            Node n = new Node(entry.getValue() / (double) numOfLetters, entry.getKey());
-            queue.add(n);
+        return new HuffmanCodec(letters, counts, queue.peek());
+    }
+
+    /*
+     * Two-queue construction: once the leaves are sorted, merged nodes come out in increasing
+     * order too, so the smallest remaining node is always at the head of one of the two queues.
+     * This takes the same merges as the pqueue, in linear time after the sort, which is skipped
+     * when the leaves arrive in order.
+     */
+    Node mergeSorted(Node[] leaves) {
+        if (!inOrder(leaves)) {
+            Arrays.sort(leaves);
+        }
+        Node[] merged = new Node[leaves.length - 1];
+        int leafHead = 0;
+        int mergedHead = 0;
+        int mergedTail = 0;
+        while (leaves.length - leafHead + mergedTail - mergedHead > 1) {
+            Node n1;
+            if (mergedHead == mergedTail || (leafHead < leaves.length
+                    && leaves[leafHead].compareTo(merged[mergedHead]) < 0)) {
+                n1 = leaves[leafHead++];
+            } else {
+                n1 = merged[mergedHead++];
+            }
+            Node n2;
+            if (mergedHead == mergedTail || (leafHead < leaves.length
+                    && leaves[leafHead].compareTo(merged[mergedHead]) < 0)) {
+                n2 = leaves[leafHead++];
+            } else {
+                n2 = merged[mergedHead++];
+            }
+            merged[mergedTail++] = merge(n1, n2);
+        }
+        return merged[mergedTail - 1];
+    }
+
+    private Node merge(Node leftChild, Node rightChild) {
+        return new Node(leftChild, rightChild, mergedNodes++);
+    }
+
+    private static boolean inOrder(Node[] leaves) {
+        for (int i = 1; i < leaves.length; i++) {
+            if (leaves[i - 1].compareTo(leaves[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Shares codec, which is never modified, with fresh compression statistics. This is how
+     * cached models are handed out cheaply.
+     *
+     * @param codec the tree and code tables to compress with
+     * @throws IllegalArgumentException if codec is null
+     */
+    public Huffman(HuffmanCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("codec null");
         }
+        this.codec = codec;
+        setTotalWeight(codec.counts());
+        queue = new MinPQ<Node>();
+        queue.add(codec.root());
+    }
+
+    //builds the canonical code with the given lengths for letters with the given counts
+    private Huffman(char[] letters, long[] counts, int[] lengths) {
+        codec = buildFromLengths(letters, counts, lengths);
+    }
 
-        //using the pqueue to construct a binary tree
-        while (queue.size() > 1) {
-            Node n1 = queue.extractMin();
-            Node n2 = queue.extractMin();
-            Node parent = new Node(n1.getFreq() + n2.getFreq(), (char) -1);
-            parent.setLeftChild(n1);
-            parent.setRightChild(n2);
-            queue.add(parent);
+    /*
+     * Builds the tree of the canonical code with the given lengths, bottom up. At every depth the
+     * leaves of that length come first in letter order, followed by the merged pairs of the depth
+     * below, which is exactly the canonical order of codes.
+     */
+    private HuffmanCodec buildFromLengths(char[] letters, long[] counts, int[] lengths) {
+        setTotalWeight(counts);
+        int maxLength = 0;
+        for (int len : lengths) {
+            maxLength = Math.max(maxLength, len);
+        }
+        List<Node> level = new ArrayList<Node>();
+        for (int depth = maxLength; depth >= 1; depth--) {
+            List<Node> above = new ArrayList<Node>();
+            for (int i = 0; i < letters.length; i++) {
+                if (lengths[i] == depth) {
+                    above.add(new Node(counts[i], letters[i], totalWeight));
+                }
+            }
+            for (int k = 0; k < level.size(); k += 2) {
+                above.add(merge(level.get(k), level.get(k + 1)));
+            }
+            level = above;
         }
+        queue = new MinPQ<Node>();
+        queue.add(merge(level.get(0), level.get(1)));
+        return new HuffmanCodec(letters, counts, queue.peek());
+    }
 
+    /**
+     * Rearranges the tree into the canonical code with the same code lengths, where letters
+     * with codes of equal length take consecutive codes in letter order. The canonical code
+     * compresses exactly as well, and can be shared through {@link #toModelBytes()}.
+     *
+     * @return a {@code Huffman} instance with the same alphabet, frequencies and code lengths
+     * but canonical codes
+     */
+    public Huffman canonical() {
+        return new Huffman(codec.letters(), codec.counts(), codec.lengths());
+    }
+
+    /**
+     * @return true if the codes of this instance are canonical, see {@link #canonical()}
+     */
+    public boolean isCanonical() {
+        return codec.isCanonical();
+    }
 
+    /**
+     * Serializes the code as its letters and their code lengths, all numbers big endian:
+     * <pre>
+     *   int    MODEL_MAGIC
+     *   int    number of letters n
+     *   n x    (char letter, byte code length), in increasing letter order
+     * </pre>
+     * Frequencies are not stored; {@link #fromModelBytes(byte[])} reconstructs the same codes
+     * without them.
+     *
+     * @return the serialized code
+     * @throws IllegalStateException if the codes are not canonical, see {@link #canonical()}, or
+     * are longer than 57 bits
+     */
+    public byte[] toModelBytes() {
+        return codec.toModelBytes();
+    }
+
+    /**
+     * Loads a code serialized by {@link #toModelBytes()}, without rebuilding it from frequencies.
+     * Frequencies are implied by the code lengths, a letter with a code of length l having
+     * probability 2^-l. Code lengths are limited to 57 bits, the longest the decode tables handle,
+     * so a model can not make loading build tree decoders for arbitrarily deep codes.
+     *
+     * @param bytes the serialized code
+     * @return a {@code Huffman} instance with the serialized canonical codes
+     * @throws IllegalArgumentException if bytes is null or not a well-formed model
+     */
+    public static Huffman fromModelBytes(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes null");
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        if (bytes.length < 8 || in.getInt() != MODEL_MAGIC) {
+            throw new IllegalArgumentException("not a Huffman model");
+        }
+        int size = in.getInt();
+        if (size < 2 || size > FrequencyCounter.ALPHABET_SIZE || in.remaining() != 3 * size) {
+            throw new IllegalArgumentException("corrupt Huffman model header");
+        }
+        char[] letters = new char[size];
+        int[] lengths = new int[size];
+        int maxLength = 0;
+        for (int i = 0; i < size; i++) {
+            letters[i] = in.getChar();
+            lengths[i] = in.get();
+            if (i > 0 && letters[i] <= letters[i - 1]) {
+                throw new IllegalArgumentException("model letters out of order");
+            }
+            if (lengths[i] > DecodeTable.MAX_CODE_LENGTH) {
+                throw new IllegalArgumentException("model code length too long");
+            }
+            maxLength = Math.max(maxLength, lengths[i]);
+        }
+        if (!CanonicalCode.isComplete(lengths)) {
+            throw new IllegalArgumentException("model code lengths do not form a complete code");
+        }
+        long[] counts = new long[size];
+        for (int i = 0; i < size; i++) {
+            counts[i] = 1L << (maxLength - lengths[i]);
+        }
+        return new Huffman(letters, counts, lengths);
     }
 
     /**
@@ -255,55 +598,122 @@ public class Huffman {
      * that are not compressible
      */
     public String compress(String input) {
-        if (input == null) {
-            throw new IllegalArgumentException("input null");
-        }
-        for (int i = 0; i < input.length(); i++) {
-            if (!alph.containsKey(input.charAt(i))) {
-                throw new IllegalArgumentException("input not in alphabet");
-            }
-        }
-        inputs.add(input);
-        StringBuilder outProducer = new StringBuilder();
-        for (int i = 0; i < input.length(); i++) {
-            outProducer.append(compressHelper(queue.peek(), input.charAt(i),
-                               new StringBuilder()).toString());
+        String bits = codec.compress(input);
+        record(input.length(), bits.length());
+        return bits;
+    }
 
-        }
-        String out = outProducer.toString();
-        outputs.add(out);
+    /**
+     * Compresses the input string into packed bits, eight to a byte, most significant bit first.
+     * The last byte is padded with zeroes; use {@link #encodedLength(String)} to get the exact
+     * number of bits for {@link #decompress(byte[], long)}.
+     *
+     * @param input the string to compress, can be the empty string
+     * @return the packed binary encoding of the inputted String
+     * @throws IllegalArgumentException if the input is null or if the input contains characters
+     * that are not compressible
+     */
+    public byte[] compressToBytes(String input) {
+        long bitLength = codec.encodedLength(input);
+        byte[] out = codec.encode(input, bitLength).toByteArray();
+        record(input.length(), bitLength);
         return out;
     }
 
+    /**
+     * Compresses the input string into packed bits written at the position of {@code out}, which
+     * is advanced past the last (zero padded) byte.
+     *
+     * @param input the string to compress, can be the empty string
+     * @param out the buffer to write the encoding to
+     * @return the number of bits written
+     * @throws IllegalArgumentException if the input or out is null, or if the input contains
+     * characters that are not compressible
+     * @throws java.nio.BufferOverflowException if out does not have room for the encoding, in
+     * which case nothing is written
+     */
+    public long compressTo(String input, ByteBuffer out) {
+        long bitLength = codec.compressTo(input, out);
+        record(input.length(), bitLength);
+        return bitLength;
+    }
 
-    StringBuilder compressHelper(Node n, char target, StringBuilder b) {
-        String bitsSoFar = b.toString();
-        if (n.isLeaf() && n.getLetter() == target) {
-            return b;
-        } else if (n.isLeaf() && n.getLetter() != target) {
-            return null;
-        } else {
-            StringBuilder left = new StringBuilder();
-            StringBuilder right = new StringBuilder();
-            if (n.getLeftChild() != null) {
-                left.append(bitsSoFar);
-                left.append(0);
-                left = compressHelper(n.getLeftChild(), target, left);
+    /**
+     * Compresses the remaining chars of {@code input} straight into {@code out}, see {@link
+     * HuffmanCodec#compressTo(CharBuffer, ByteBuffer)}.
+     *
+     * @param input the chars to compress
+     * @param out the buffer to write the encoding to
+     * @return the number of bits written
+     * @throws IllegalArgumentException if input or out is null, or if input contains characters
+     * that are not compressible
+     * @throws java.nio.BufferOverflowException if out does not have room for the encoding
+     */
+    public long compressTo(CharBuffer input, ByteBuffer out) {
+        int chars = input == null ? 0 : input.remaining();
+        long bitLength = codec.compressTo(input, out);
+        record(chars, bitLength);
+        return bitLength;
+    }
 
-            }
-            if (n.getRightChild() != null) {
-                right.append(bitsSoFar);
-                right.append(1);
-                right = compressHelper(n.getRightChild(), target, right);
-            }
-            if (right != null && left == null) {
-                return right;
-            } else if (left != null && right == null) {
-                return left;
-            } else {
-                return null;
+    /**
+     * Compresses the remaining bytes of {@code input} straight into {@code out}, each byte taken
+     * as the char of the same value, see {@link HuffmanCodec#compressTo(ByteBuffer, ByteBuffer)}.
+     *
+     * @param input the bytes to compress
+     * @param out the buffer to write the encoding to
+     * @return the number of bits written
+     * @throws IllegalArgumentException if input or out is null, or if input contains bytes that
+     * are not compressible
+     * @throws java.nio.BufferOverflowException if out does not have room for the encoding
+     */
+    public long compressTo(ByteBuffer input, ByteBuffer out) {
+        int bytes = input == null ? 0 : input.remaining();
+        long bitLength = codec.compressTo(input, out);
+        record(bytes, bitLength);
+        return bitLength;
+    }
+
+    //adds one compress call to the running totals
+    private void record(long chars, long bits) {
+        compressCalls.increment();
+        inputChars.add(chars);
+        outputBits.add(bits);
+    }
+
+    /**
+     * Computes the number of bits the encoding of the input takes, without encoding it.
+     *
+     * @param input the string to measure, can be the empty string
+     * @return the length in bits of the encoding of input
+     * @throws IllegalArgumentException if the input is null or if the input contains characters
+     * that are not compressible
+     */
+    public long encodedLength(String input) {
+        return codec.encodedLength(input);
+    }
+
+    //expands packed bits into a string of '0' and '1'
+    static String toBitString(byte[] data, long bitLength) {
+        char[] out = new char[(int) bitLength];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ((data[i >>> 3] >>> (7 - (i & 7))) & 1) == 0 ? '0' : '1';
+        }
+        return new String(out);
+    }
+
+    //packs a string of '0' and '1' into bytes
+    static byte[] fromBitString(String bits) {
+        byte[] out = new byte[(bits.length() + 7) / 8];
+        for (int i = 0; i < bits.length(); i++) {
+            char c = bits.charAt(i);
+            if (c == '1') {
+                out[i >>> 3] |= (byte) (0x80 >>> (i & 7));
+            } else if (c != '0') {
+                throw new IllegalArgumentException("contains non-0-or-1 char");
             }
         }
+        return out;
     }
 
     /**
@@ -315,81 +725,83 @@ public class Huffman {
      * @throws IllegalArgumentException if the input is null, or if the input contains characters
      * that are NOT 0 or 1, or input contains a sequence of bits that is not decodable
      */
-    //unimplemented, still need to think
     public String decompress(String input) {
-        if (input == null) {
-            throw new IllegalArgumentException("input null");
-        }
-
-        //also, if input contains a sequence that is not decodable, meaning is not in outputs set?
-        /*
-         *need another exception check! or throw within the functio
-         */
-        //empty string
-        if (input.length() == 0) {
-            String out = "";
-            return out;
-        } else {
-            StringBuilder b = new StringBuilder();
-            Node root = queue.peek();
-            Node curNode = root;
-            for (int i = 0; i < input.length(); i++) {
-                char c = input.charAt(i);
-                if (c == '0') {
-                    if (curNode.getLeftChild() != null) {
-                        curNode = curNode.getLeftChild();
-                    } else {
-                        //ensures all invalid strings are ruled out?
-                        throw new IllegalArgumentException("invalid");
-                    }
-                } else if (c == '1') {
-                    if (curNode.getRightChild() != null) {
-                        curNode = curNode.getRightChild();
-                    } else {
-                        throw new IllegalArgumentException("invalid");
-                    }
-                } else {
-                    throw new IllegalArgumentException("contains non-0-or-1 char");
-                }
-                /*in the end, checks if some chars are unused or
-                 *leads to a non-leaf node and stops halfway
-                 */
-                if (i == input.length() - 1 && !curNode.isLeaf()) {
-                    throw new IllegalArgumentException("invalid");
-                }
-                if (curNode.isLeaf()) {
-                    b.append(curNode.getLetter());
-                    curNode = root;
-                }
-            }
-            String out = b.toString();
-            return out;
-        }
+        return codec.decompress(input);
     }
 
+    /**
+     * Decompresses packed bits, as produced by {@link #compressToBytes(String)}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the start of input
+     * @return the decoded version of the compressed input
+     * @throws IllegalArgumentException if the input is null, if bitLength is negative or larger
+     * than the input, or if the bits are not decodable
+     */
+    public String decompress(byte[] input, long bitLength) {
+        return codec.decompress(input, bitLength);
+    }
 
+    /**
+     * Decompresses packed bits from {@code input} straight into {@code out}, see {@link
+     * HuffmanCodec#decompressTo(ByteBuffer, long, CharBuffer)}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the position of input
+     * @param out the buffer to write the decoded chars to
+     * @return the number of chars written
+     * @throws IllegalArgumentException if input or out is null, if bitLength is negative or
+     * larger than the remaining input, or if the bits are not decodable
+     * @throws java.nio.BufferOverflowException if out fills up before the bits are decoded
+     */
+    public int decompressTo(ByteBuffer input, long bitLength, CharBuffer out) {
+        return codec.decompressTo(input, bitLength, out);
+    }
 
+    /**
+     * Decompresses packed bits from {@code input} straight into {@code out} as bytes, see {@link
+     * HuffmanCodec#decompressTo(ByteBuffer, long, ByteBuffer)}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the position of input
+     * @param out the buffer to write the decoded bytes to
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if input or out is null, if bitLength is negative or
+     * larger than the remaining input, or if the bits are not decodable or decode to a char
+     * above 255
+     * @throws java.nio.BufferOverflowException if out fills up before the bits are decoded
+     */
+    public int decompressTo(ByteBuffer input, long bitLength, ByteBuffer out) {
+        return codec.decompressTo(input, bitLength, out);
+    }
 
+    /**
+     * @return the immutable tree and code tables of this instance, which can be shared with
+     * other threads and {@code Huffman} instances
+     */
+    public HuffmanCodec getCodec() {
+        return codec;
+    }
 
   /**
      * Computes the compression ratio so far. This is the length of all output strings from {@link
      * #compress(String)} divided by the length of all input strings to {@link #compress(String)}.
-     * Assume that each char in the input string is a 16 bit int.
+     * Assume that each char in the input string is a 16 bit int. Calls to {@link
+     * #compressToBytes(String)} and every {@code compressTo} overload count as well, by their
+     * length in bits, with each byte of a {@link ByteBuffer} input counting as a char.
+     *
+     * Only running totals are kept, so this takes constant time and memory however many calls
+     * have been made.
      *
      * @return the ratio of the total output length to the total input length in bits
      * @throws IllegalStateException if no calls have been made to {@link #compress(String)} before
      * calling this method
      */
     public double compressionRatio() {
-        int totalInputLength = 0;
-        int totalOutputLength = 0;
-        for (String s : inputs) {
-            totalInputLength += s.length();
-        }
-        for (String str : outputs) {
-            totalOutputLength += str.length();
+        if (compressCalls.sum() == 0) {
+            throw new IllegalStateException("nothing compressed yet");
         }
-        return totalOutputLength / (16.0 * totalInputLength);
+        return outputBits.sum() / (16.0 * inputChars.sum());
     }
 
     /**
@@ -399,19 +811,22 @@ public class Huffman {
      * The expected encoding length is simply the sum of the length of the encoding of each 
      * character multiplied by the probability that character occurs. 
      *
+     * It is computed once from the code lengths when the tree is built, and does not count
+     * towards {@link #compressionRatio()}.
+     *
      * @return the expected encoding length of an arbitrary character in the alphabet
      */
     public double expectedEncodingLength() {
-        Set<Map.Entry<Character, Integer>> set = alph.entrySet();
-        int numOfLetters = 0;
-        for (Map.Entry<Character, Integer> entry : set) {
-            numOfLetters += entry.getValue();
-        }
-        double sum = 0.0;
-        for (Map.Entry<Character, Integer> e : set) {
-            String s = "" + e.getKey();
-            sum += (double) e.getValue() / numOfLetters * compress(s).length();
-        }
-        return sum;
+        return codec.expectedEncodingLength();
+    }
+
+    /**
+     * @param c a letter of the alphabet
+     * @return the code of c as a string of ones and zeroes, without counting towards
+     * {@link #compressionRatio()}
+     * @throws IllegalArgumentException if c is not in the alphabet
+     */
+    String codeFor(char c) {
+        return codec.codeFor(c);
     }
 }
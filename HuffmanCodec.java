@@ -0,0 +1,558 @@
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * The immutable part of a {@link Huffman} encoding: the tree, the code table and the decode
+ * tables. Nothing is modified after construction and no statistics are kept, so one instance
+ * can be shared by any number of threads. Get one from {@link Huffman#getCodec()}, or from
+ * {@link HuffmanModelCache#getCodec(java.util.Map)}.
+ */
+public final class HuffmanCodec {
+    //chars decoded at a time when the output buffer has no array to decode into
+    private static final int DECODE_CHUNK = 4096;
+
+    //the alphabet in increasing order, and the count of each letter
+    private final char[] letters;
+    private final long[] counts;
+    private final Huffman.Node root;
+    //code table indexed by char, a length of 0 marks a char outside the alphabet
+    private final long[] codeBits;
+    private final byte[] codeLengths;
+    private final int maxCodeLength;
+    //sum of code length times probability over the alphabet
+    private final double expectedLength;
+    //null when codes are too long for table decoding
+    private final DecodeTable decodeTable;
+
+    //walks the finished tree once and records the code of every leaf
+    HuffmanCodec(char[] letters, long[] counts, Huffman.Node root) {
+        this.letters = letters;
+        this.counts = counts;
+        this.root = root;
+        int maxLetter = letters[letters.length - 1];
+        codeBits = new long[maxLetter + 1];
+        codeLengths = new byte[maxLetter + 1];
+
+        //explicit stack so skewed trees cannot overflow the call stack
+        Huffman.Node[] nodes = new Huffman.Node[letters.length];
+        long[] bits = new long[letters.length];
+        int[] depths = new int[letters.length];
+        int maxLength = 0;
+        int top = 0;
+        nodes[top++] = root;
+        while (top > 0) {
+            top--;
+            Huffman.Node n = nodes[top];
+            long code = bits[top];
+            int depth = depths[top];
+            if (n.isLeaf()) {
+                codeBits[n.getLetter()] = code;
+                codeLengths[n.getLetter()] = (byte) depth;
+                maxLength = Math.max(maxLength, depth);
+            } else {
+                if (depth == Long.SIZE) {
+                    throw new IllegalArgumentException("code length exceeds 64 bits");
+                }
+                nodes[top] = n.getRightChild();
+                bits[top] = (code << 1) | 1;
+                depths[top++] = depth + 1;
+                nodes[top] = n.getLeftChild();
+                bits[top] = code << 1;
+                depths[top++] = depth + 1;
+            }
+        }
+        maxCodeLength = maxLength;
+
+        long totalWeight = 0;
+        long weightedLength = 0;
+        for (int i = 0; i < letters.length; i++) {
+            totalWeight += counts[i];
+            weightedLength += counts[i] * codeLengths[letters[i]];
+        }
+        expectedLength = weightedLength / (double) totalWeight;
+
+        //built eagerly so the tables are safely published with the rest of the codec; nested
+        //secondary tables keep them linear in the alphabet however deep the codes are
+        if (maxCodeLength <= DecodeTable.MAX_CODE_LENGTH) {
+            long[] codes = new long[letters.length];
+            int[] lengths = new int[letters.length];
+            for (int i = 0; i < letters.length; i++) {
+                codes[i] = codeBits[letters[i]];
+                lengths[i] = codeLengths[letters[i]];
+            }
+            decodeTable = new DecodeTable(letters, codes, lengths);
+        } else {
+            decodeTable = null;
+        }
+    }
+
+    /**
+     * Compresses the input string.
+     *
+     * @param input the string to compress, can be the empty string
+     * @return a string of ones and zeroes, representing the binary encoding of the inputted String.
+     * @throws IllegalArgumentException if the input is null or if the input contains characters
+     * that are not compressible
+     */
+    public String compress(String input) {
+        long bitLength = encodedLength(input);
+        if (bitLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("encoding too long for a String");
+        }
+        return Huffman.toBitString(encode(input, bitLength).toByteArray(), bitLength);
+    }
+
+    /**
+     * Compresses the input string into packed bits, eight to a byte, most significant bit first.
+     * The last byte is padded with zeroes; use {@link #encodedLength(String)} to get the exact
+     * number of bits for {@link #decompress(byte[], long)}.
+     *
+     * @param input the string to compress, can be the empty string
+     * @return the packed binary encoding of the inputted String
+     * @throws IllegalArgumentException if the input is null or if the input contains characters
+     * that are not compressible
+     */
+    public byte[] compressToBytes(String input) {
+        return encode(input, encodedLength(input)).toByteArray();
+    }
+
+    /**
+     * Compresses the input string into packed bits written at the position of {@code out}, which
+     * is advanced past the last (zero padded) byte.
+     *
+     * @param input the string to compress, can be the empty string
+     * @param out the buffer to write the encoding to
+     * @return the number of bits written
+     * @throws IllegalArgumentException if the input or out is null, or if the input contains
+     * characters that are not compressible
+     * @throws java.nio.BufferOverflowException if out does not have room for the encoding, in
+     * which case nothing is written
+     */
+    public long compressTo(String input, ByteBuffer out) {
+        if (out == null) {
+            throw new IllegalArgumentException("out null");
+        }
+        long bitLength = encodedLength(input);
+        if ((bitLength + 7) / 8 > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        BufferBitWriter w = new BufferBitWriter(out);
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            w.write(codeBits[c], codeLengths[c]);
+        }
+        out.position(w.finish());
+        return bitLength;
+    }
+
+    /**
+     * Compresses the remaining chars of {@code input} into packed bits written at the position
+     * of {@code out}. Both buffers may be heap or direct; the codes are written straight into
+     * out, without an intermediate String or array. On success input is advanced to its limit
+     * and out past the last (zero padded) byte.
+     *
+     * @param input the chars to compress
+     * @param out the buffer to write the encoding to
+     * @return the number of bits written
+     * @throws IllegalArgumentException if input or out is null, or if input contains characters
+     * that are not compressible, in which case neither buffer is advanced
+     * @throws java.nio.BufferOverflowException if out does not have room for the encoding, in
+     * which case neither buffer is advanced
+     */
+    public long compressTo(CharBuffer input, ByteBuffer out) {
+        if (input == null || out == null) {
+            throw new IllegalArgumentException("buffer null");
+        }
+        int from = input.position();
+        int to = input.limit();
+        long bitLength = 0;
+        for (int i = from; i < to; i++) {
+            char c = input.get(i);
+            if (c >= codeLengths.length || codeLengths[c] == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            bitLength += codeLengths[c];
+        }
+        if ((bitLength + 7) / 8 > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        BufferBitWriter w = new BufferBitWriter(out);
+        for (int i = from; i < to; i++) {
+            char c = input.get(i);
+            w.write(codeBits[c], codeLengths[c]);
+        }
+        out.position(w.finish());
+        input.position(to);
+        return bitLength;
+    }
+
+    /**
+     * Compresses the remaining bytes of {@code input}, each taken as the char of the same value
+     * (0 to 255), like {@link #compressTo(CharBuffer, ByteBuffer)}.
+     *
+     * @param input the bytes to compress
+     * @param out the buffer to write the encoding to
+     * @return the number of bits written
+     * @throws IllegalArgumentException if input or out is null, or if input contains bytes that
+     * are not compressible, in which case neither buffer is advanced
+     * @throws java.nio.BufferOverflowException if out does not have room for the encoding, in
+     * which case neither buffer is advanced
+     */
+    public long compressTo(ByteBuffer input, ByteBuffer out) {
+        if (input == null || out == null) {
+            throw new IllegalArgumentException("buffer null");
+        }
+        int from = input.position();
+        int to = input.limit();
+        long bitLength = 0;
+        for (int i = from; i < to; i++) {
+            int c = input.get(i) & 0xFF;
+            if (c >= codeLengths.length || codeLengths[c] == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            bitLength += codeLengths[c];
+        }
+        if ((bitLength + 7) / 8 > out.remaining()) {
+            throw new BufferOverflowException();
+        }
+        BufferBitWriter w = new BufferBitWriter(out);
+        for (int i = from; i < to; i++) {
+            int c = input.get(i) & 0xFF;
+            w.write(codeBits[c], codeLengths[c]);
+        }
+        out.position(w.finish());
+        input.position(to);
+        return bitLength;
+    }
+
+    /**
+     * Computes the number of bits the encoding of the input takes, without encoding it.
+     *
+     * @param input the string to measure, can be the empty string
+     * @return the length in bits of the encoding of input
+     * @throws IllegalArgumentException if the input is null or if the input contains characters
+     * that are not compressible
+     */
+    public long encodedLength(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        long bitLength = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            //the length table doubles as the alphabet bitset, letters never have length 0
+            if (c >= codeLengths.length || codeLengths[c] == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            bitLength += codeLengths[c];
+        }
+        return bitLength;
+    }
+
+    //encodes an input already measured by encodedLength
+    BitWriter encode(String input, long bitLength) {
+        BitWriter w = new BitWriter((int) Math.min(bitLength / 8 + 1, Integer.MAX_VALUE - 8));
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            w.write(codeBits[c], codeLengths[c]);
+        }
+        return w;
+    }
+
+    //validates and appends the codes of input[off, off + len), for streams
+    void encode(char[] input, int off, int len, BitWriter w) {
+        for (int i = off; i < off + len; i++) {
+            char c = input[i];
+            if (c >= codeLengths.length || codeLengths[c] == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            w.write(codeBits[c], codeLengths[c]);
+        }
+    }
+
+    //appends the codes of the bytes at absolute indexes [from, to), each taken as the char of the
+    //same value, for encoding straight out of a mapped file
+    void encode(ByteBuffer input, int from, int to, BitWriter w) {
+        for (int i = from; i < to; i++) {
+            int c = input.get(i) & 0xFF;
+            if (c >= codeLengths.length || codeLengths[c] == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            w.write(codeBits[c], codeLengths[c]);
+        }
+    }
+
+    //validates and appends the codes of input[from, to), for callers that encode in pieces
+    void encode(String input, int from, int to, BitWriter w) {
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (c >= codeLengths.length || codeLengths[c] == 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            w.write(codeBits[c], codeLengths[c]);
+        }
+    }
+
+    /**
+     * Decompresses the input string.
+     *
+     * @param input the String of binary digits to decompress, given that it was generated by a
+     * matching instance of the same compression strategy
+     * @return the decoded version of the compressed input string
+     * @throws IllegalArgumentException if the input is null, or if the input contains characters
+     * that are NOT 0 or 1, or input contains a sequence of bits that is not decodable
+     */
+    public String decompress(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        return decompress(Huffman.fromBitString(input), input.length());
+    }
+
+    /**
+     * Decompresses packed bits, as produced by {@link #compressToBytes(String)}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the start of input
+     * @return the decoded version of the compressed input
+     * @throws IllegalArgumentException if the input is null, if bitLength is negative or larger
+     * than the input, or if the bits are not decodable
+     */
+    public String decompress(byte[] input, long bitLength) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        if (bitLength < 0 || bitLength > 8L * input.length) {
+            throw new IllegalArgumentException("bitLength out of range");
+        }
+        BitReader in = new BitReader(input, bitLength);
+        if (decodeTable == null) {
+            return decompressByTree(in);
+        }
+        char[] out = new char[(int) Math.min(bitLength / maxCodeLength + 16, Integer.MAX_VALUE - 8)];
+        int size = 0;
+        while (in.remaining() > 0) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, (int) Math.min(2L * out.length, Integer.MAX_VALUE - 8));
+            }
+            size += decodeTable.decode(in, out, size, out.length - size);
+        }
+        return new String(out, 0, size);
+    }
+
+    /**
+     * Decompresses {@code bitLength} packed bits starting at the position of {@code input} into
+     * {@code out}. Both buffers may be heap or direct; a heap out is decoded into in place. On
+     * success input is advanced past the last byte of the bits and out past the last char.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the position of input
+     * @param out the buffer to write the decoded chars to
+     * @return the number of chars written
+     * @throws IllegalArgumentException if input or out is null, if bitLength is negative or
+     * larger than the remaining input, or if the bits are not decodable
+     * @throws java.nio.BufferOverflowException if out fills up before the bits are decoded, in
+     * which case out holds the chars decoded so far and input is not advanced
+     */
+    public int decompressTo(ByteBuffer input, long bitLength, CharBuffer out) {
+        BitReader in = readerOf(input, bitLength, out);
+        int written = 0;
+        if (decodeTable == null) {
+            String text = decompressByTree(in);
+            if (text.length() > out.remaining()) {
+                throw new BufferOverflowException();
+            }
+            out.put(text);
+            written = text.length();
+        } else if (out.hasArray()) {
+            char[] array = out.array();
+            int base = out.arrayOffset();
+            while (in.remaining() > 0) {
+                if (!out.hasRemaining()) {
+                    throw new BufferOverflowException();
+                }
+                int n = decodeTable.decode(in, array, base + out.position(), out.remaining());
+                out.position(out.position() + n);
+                written += n;
+            }
+        } else {
+            char[] chunk = new char[Math.min(out.remaining(), DECODE_CHUNK)];
+            while (in.remaining() > 0) {
+                if (!out.hasRemaining()) {
+                    throw new BufferOverflowException();
+                }
+                int n = decodeTable.decode(in, chunk, 0, Math.min(chunk.length, out.remaining()));
+                out.put(chunk, 0, n);
+                written += n;
+            }
+        }
+        input.position(input.position() + (int) ((bitLength + 7) / 8));
+        return written;
+    }
+
+    /**
+     * Decompresses packed bits into bytes, each decoded char taken as the byte of the same value,
+     * like {@link #decompressTo(ByteBuffer, long, CharBuffer)}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the position of input
+     * @param out the buffer to write the decoded bytes to
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if input or out is null, if bitLength is negative or
+     * larger than the remaining input, or if the bits are not decodable or decode to a char
+     * above 255
+     * @throws java.nio.BufferOverflowException if out fills up before the bits are decoded, in
+     * which case out holds the bytes decoded so far and input is not advanced
+     */
+    public int decompressTo(ByteBuffer input, long bitLength, ByteBuffer out) {
+        BitReader in = readerOf(input, bitLength, out);
+        int written = 0;
+        if (decodeTable == null) {
+            String text = decompressByTree(in);
+            if (text.length() > out.remaining()) {
+                throw new BufferOverflowException();
+            }
+            for (int i = 0; i < text.length(); i++) {
+                out.put(toByte(text.charAt(i)));
+            }
+            written = text.length();
+        } else {
+            char[] chunk = new char[Math.min(out.remaining(), DECODE_CHUNK)];
+            while (in.remaining() > 0) {
+                if (!out.hasRemaining()) {
+                    throw new BufferOverflowException();
+                }
+                int n = decodeTable.decode(in, chunk, 0, Math.min(chunk.length, out.remaining()));
+                for (int i = 0; i < n; i++) {
+                    out.put(toByte(chunk[i]));
+                }
+                written += n;
+            }
+        }
+        input.position(input.position() + (int) ((bitLength + 7) / 8));
+        return written;
+    }
+
+    //checks the arguments of decompressTo and reads the bits in place
+    private static BitReader readerOf(ByteBuffer input, long bitLength, Buffer out) {
+        if (input == null || out == null) {
+            throw new IllegalArgumentException("buffer null");
+        }
+        if (bitLength < 0 || bitLength > 8L * input.remaining()) {
+            throw new IllegalArgumentException("bitLength out of range");
+        }
+        long start = 8L * input.position();
+        return new BitReader(input, start, start + bitLength);
+    }
+
+    private static byte toByte(char c) {
+        if (c > 0xFF) {
+            throw new IllegalArgumentException("decoded char is not a byte");
+        }
+        return (byte) c;
+    }
+
+    DecodeTable decodeTable() {
+        return decodeTable;
+    }
+
+    //bit by bit fallback for trees deeper than the decode tables support
+    String decompressByTree(BitReader in) {
+        StringBuilder b = new StringBuilder();
+        Huffman.Node curNode = root;
+        while (in.remaining() > 0) {
+            curNode = in.readBit() == 0 ? curNode.getLeftChild() : curNode.getRightChild();
+            if (curNode.isLeaf()) {
+                b.append(curNode.getLetter());
+                curNode = root;
+            }
+        }
+        //bits ran out halfway down the tree
+        if (curNode != root) {
+            throw new IllegalArgumentException("invalid");
+        }
+        return b.toString();
+    }
+
+    /**
+     * @return true if the codes are canonical, see {@link Huffman#canonical()}
+     */
+    public boolean isCanonical() {
+        long[] canonicalCodes = CanonicalCode.assign(lengths());
+        for (int i = 0; i < letters.length; i++) {
+            if (codeBits[letters[i]] != canonicalCodes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the code in the format of {@link Huffman#toModelBytes()}.
+     *
+     * @return the serialized code
+     * @throws IllegalStateException if the codes are not canonical or are longer than 57 bits
+     */
+    public byte[] toModelBytes() {
+        if (!isCanonical()) {
+            throw new IllegalStateException("codes are not canonical");
+        }
+        if (maxCodeLength > DecodeTable.MAX_CODE_LENGTH) {
+            throw new IllegalStateException("codes too long for a model");
+        }
+        ByteBuffer out = ByteBuffer.allocate(8 + 3 * letters.length);
+        out.putInt(Huffman.MODEL_MAGIC);
+        out.putInt(letters.length);
+        for (char letter : letters) {
+            out.putChar(letter);
+            out.put(codeLengths[letter]);
+        }
+        return out.array();
+    }
+
+    /**
+     * @return the expected encoding length of an arbitrary character in the alphabet, see
+     * {@link Huffman#expectedEncodingLength()}
+     */
+    public double expectedEncodingLength() {
+        return expectedLength;
+    }
+
+    //code length of each letter, in letter order
+    int[] lengths() {
+        int[] lengths = new int[letters.length];
+        for (int i = 0; i < letters.length; i++) {
+            lengths[i] = codeLengths[letters[i]];
+        }
+        return lengths;
+    }
+
+    /**
+     * @param c a letter of the alphabet
+     * @return the code of c as a string of ones and zeroes
+     * @throws IllegalArgumentException if c is not in the alphabet
+     */
+    String codeFor(char c) {
+        if (c >= codeLengths.length || codeLengths[c] == 0) {
+            throw new IllegalArgumentException("input not in alphabet");
+        }
+        BitWriter w = new BitWriter(8);
+        w.write(codeBits[c], codeLengths[c]);
+        return Huffman.toBitString(w.toByteArray(), codeLengths[c]);
+    }
+
+    char[] letters() {
+        return letters;
+    }
+
+    long[] counts() {
+        return counts;
+    }
+
+    Huffman.Node root() {
+        return root;
+    }
+}
@@ -0,0 +1,281 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Headless compressor and decompressor for files, each byte taken as the char of the same value
+ * (0 to 255). Inputs are memory-mapped rather than read through a stream; the model is built
+ * from a single counting pass over the mapped input, and a second pass encodes it straight from
+ * the mapping. A compressed file is, all numbers big endian:
+ * <pre>
+ *   int    FILE_MAGIC
+ *   long   length of the original file in bytes
+ *   int    length of the model m
+ *   m      the model, as written by {@link Huffman#toModelBytes()}
+ *          frames of packed bits, as written by {@link HuffmanWriter}
+ * </pre>
+ * Usage: {@code java HuffmanFileCompressor compress|decompress <input> <output>}
+ */
+public class HuffmanFileCompressor {
+    /** First four bytes of a compressed file, "HUFZ". */
+    static final int FILE_MAGIC = 0x4855465A;
+    /** Longest code used, short enough for every code to be decoded by table. */
+    static final int MAX_CODE_LENGTH = 24;
+    //files are mapped in windows of this many bytes, as a single mapping is limited to 2GB
+    static final int WINDOW_BYTES = 1 << 30;
+    //bytes of decoded output buffered at a time
+    private static final int CHUNK = 1 << 16;
+    //packed bytes per frame, and input bytes encoded between checks, at most 3 bytes of codes each
+    private static final int FRAME_BYTES = HuffmanWriter.DEFAULT_FRAME_BYTES;
+    private static final int FRAME_SLICE = FRAME_BYTES / 8;
+
+    private HuffmanFileCompressor() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            usage();
+            return;
+        }
+        Path in = Paths.get(args[1]);
+        Path out = Paths.get(args[2]);
+        if (args[0].equals("compress")) {
+            long written = compress(in, out);
+            System.out.println(Files.size(in) + " -> " + written + " bytes");
+        } else if (args[0].equals("decompress")) {
+            long written = decompress(in, out);
+            System.out.println(Files.size(in) + " -> " + written + " bytes");
+        } else {
+            usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: java HuffmanFileCompressor compress|decompress <input> <output>");
+        System.exit(2);
+    }
+
+    /**
+     * Compresses a file.
+     *
+     * @param in the file to compress
+     * @param out the file to write, replaced if it exists
+     * @return the length of the compressed file in bytes
+     * @throws IllegalArgumentException if in or out is null
+     * @throws IOException if in can not be read or out can not be written
+     */
+    public static long compress(Path in, Path out) throws IOException {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("path null");
+        }
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] counts = new long[256];
+            for (long pos = 0; pos < size; pos += WINDOW_BYTES) {
+                MappedByteBuffer window = map(channel, pos);
+                for (int i = 0; i < window.limit(); i++) {
+                    counts[window.get(i) & 0xFF]++;
+                }
+            }
+            //length-limited codes are canonical, so they serialize as they are
+            Huffman huffman = new Huffman(alphabetOf(counts), MAX_CODE_LENGTH);
+            byte[] model = huffman.toModelBytes();
+
+            HuffmanCodec codec = huffman.getCodec();
+            try (DataOutputStream sink = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(out), CHUNK))) {
+                sink.writeInt(FILE_MAGIC);
+                sink.writeLong(size);
+                sink.writeInt(model.length);
+                sink.write(model);
+                //codes go straight from the mapping into the frame, in the format of HuffmanWriter
+                BitWriter frame = new BitWriter(FRAME_BYTES + 8);
+                for (long pos = 0; pos < size; pos += WINDOW_BYTES) {
+                    MappedByteBuffer window = map(channel, pos);
+                    for (int i = 0; i < window.limit(); i += FRAME_SLICE) {
+                        codec.encode(window, i, Math.min(i + FRAME_SLICE, window.limit()), frame);
+                        if (frame.byteLength() >= FRAME_BYTES) {
+                            writeFrame(frame, sink);
+                        }
+                    }
+                }
+                writeFrame(frame, sink);
+                sink.writeInt(0);
+            }
+        }
+        return Files.size(out);
+    }
+
+    /*
+     * Counts of the bytes that occur, halved until each fits an Integer. Two letters are the
+     * least a code can have, so unused byte values fill in for files with fewer.
+     */
+    private static Map<Character, Integer> alphabetOf(long[] counts) {
+        long max = 0;
+        int used = 0;
+        for (long count : counts) {
+            max = Math.max(max, count);
+            if (count > 0) {
+                used++;
+            }
+        }
+        int shift = 0;
+        while ((max >>> shift) > Integer.MAX_VALUE) {
+            shift++;
+        }
+        Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
+        for (int b = 0; b < counts.length; b++) {
+            if (counts[b] > 0) {
+                alphabet.put((char) b, (int) Math.max(1, counts[b] >>> shift));
+            } else if (used < 2) {
+                alphabet.put((char) b, 1);
+                used++;
+            }
+        }
+        return alphabet;
+    }
+
+    /**
+     * Decompresses a file written by {@link #compress(Path, Path)}.
+     *
+     * @param in the compressed file
+     * @param out the file to write, replaced if it exists
+     * @return the length of the decompressed file in bytes
+     * @throws IllegalArgumentException if in or out is null
+     * @throws IOException if in can not be read, is not a compressed file or is corrupt, or if out
+     * can not be written
+     */
+    public static long decompress(Path in, Path out) throws IOException {
+        if (in == null || out == null) {
+            throw new IllegalArgumentException("path null");
+        }
+        try (FileChannel channel = FileChannel.open(in, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer window = map(channel, 0);
+            HuffmanCodec codec;
+            long length;
+            try {
+                if (window.getInt() != FILE_MAGIC) {
+                    throw new IOException("not a compressed file");
+                }
+                length = window.getLong();
+                int modelLength = window.getInt();
+                if (length < 0 || modelLength < 0 || modelLength > window.remaining()) {
+                    throw new IOException("corrupt compressed file header");
+                }
+                byte[] model = new byte[modelLength];
+                window.get(model);
+                //compress never writes longer codes, so a model with them is corrupt
+                for (int i = 10; i < model.length; i += 3) {
+                    if (model[i] > MAX_CODE_LENGTH) {
+                        throw new IOException("corrupt compressed file header: code too long");
+                    }
+                }
+                codec = Huffman.fromModelBytes(model).getCodec();
+            } catch (BufferUnderflowException e) {
+                throw new EOFException("compressed file header truncated");
+            } catch (IllegalArgumentException e) {
+                throw new IOException("corrupt compressed file header", e);
+            }
+
+            //out is only created, or truncated, once the header has been checked
+            try (OutputStream sink = new BufferedOutputStream(Files.newOutputStream(out), CHUNK)) {
+                DecodeTable table = codec.decodeTable();
+                char[] chars = new char[CHUNK];
+                byte[] bytes = new byte[CHUNK];
+                long windowStart = 0;
+                long pos = window.position();
+                long written = 0;
+                while (true) {
+                    if (pos + 4 > size) {
+                        throw new EOFException("compressed file truncated");
+                    }
+                    if (pos + 4 > windowStart + window.limit()) {
+                        window = map(channel, pos);
+                        windowStart = pos;
+                    }
+                    int bits = window.getInt((int) (pos - windowStart));
+                    if (bits < 0) {
+                        throw new IOException("corrupt compressed file: negative frame length");
+                    }
+                    if (bits == 0) {
+                        break;
+                    }
+                    long frameEnd = pos + 4 + (bits + 7L) / 8;
+                    if (frameEnd > size) {
+                        throw new EOFException("compressed file truncated");
+                    }
+                    //frames are far shorter than a window, so one remap always makes it fit
+                    if (frameEnd > windowStart + window.limit()) {
+                        window = map(channel, pos);
+                        windowStart = pos;
+                    }
+                    long bitStart = 8 * (pos + 4 - windowStart);
+                    BitReader frame = new BitReader(window, bitStart, bitStart + bits);
+                    try {
+                        if (table == null) {
+                            String text = codec.decompressByTree(frame);
+                            for (int i = 0; i < text.length(); i += CHUNK) {
+                                int n = Math.min(CHUNK, text.length() - i);
+                                text.getChars(i, i + n, chars, 0);
+                                written += writeBytes(chars, n, bytes, sink);
+                            }
+                        } else {
+                            while (frame.remaining() > 0) {
+                                int n = table.decode(frame, chars, 0, chars.length);
+                                written += writeBytes(chars, n, bytes, sink);
+                            }
+                        }
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("corrupt compressed file", e);
+                    }
+                    pos = frameEnd;
+                }
+                if (written != length) {
+                    throw new IOException("corrupt compressed file: expected " + length
+                            + " bytes, decoded " + written);
+                }
+                return written;
+            }
+        }
+    }
+
+    //narrows decoded chars back to the bytes they stand for
+    private static int writeBytes(char[] chars, int n, byte[] bytes, OutputStream sink)
+            throws IOException {
+        for (int i = 0; i < n; i++) {
+            if (chars[i] > 0xFF) {
+                throw new IOException("corrupt compressed file: symbol is not a byte");
+            }
+            bytes[i] = (byte) chars[i];
+        }
+        sink.write(bytes, 0, n);
+        return n;
+    }
+
+    private static void writeFrame(BitWriter frame, DataOutputStream sink) throws IOException {
+        if (frame.bitLength() == 0) {
+            return;
+        }
+        sink.writeInt((int) frame.bitLength());
+        frame.writeTo(sink);
+        frame.reset();
+    }
+
+    //maps the window of the file starting at pos, read only
+    private static MappedByteBuffer map(FileChannel channel, long pos) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                Math.min(WINDOW_BYTES, channel.size() - pos));
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that decompresses a stream written by {@link HuffmanOutputStream} with
+ * the same {@link Huffman} encoding. Not safe for concurrent use.
+ */
+public class HuffmanInputStream extends InputStream {
+    private final HuffmanReader reader;
+    private final char[] chars = new char[4096];
+
+    /**
+     * @param in the stream of compressed frames
+     * @param huffman the encoding the stream was compressed with
+     * @throws IllegalArgumentException if in or huffman is null
+     */
+    public HuffmanInputStream(InputStream in, Huffman huffman) {
+        reader = new HuffmanReader(in, huffman);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the stream is corrupt or decodes to a char above 255
+     */
+    @Override
+    public int read() throws IOException {
+        int c = reader.read();
+        if (c > 0xFF) {
+            throw new IOException("decoded char is not a byte: " + c);
+        }
+        return c;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the stream is corrupt or decodes to a char above 255
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = reader.read(chars, 0, Math.min(len, chars.length));
+        for (int i = 0; i < n; i++) {
+            if (chars[i] > 0xFF) {
+                throw new IOException("decoded char is not a byte: " + (int) chars[i]);
+            }
+            b[off + i] = (byte) chars[i];
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
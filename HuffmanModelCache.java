@@ -0,0 +1,156 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A size-bounded cache of {@link Huffman} models keyed by their frequency table, so that
+ * requests sharing a frequency map reuse one tree and its code and decode tables instead of
+ * rebuilding them. The cache holds {@link HuffmanCodec}s, which callers may share directly;
+ * {@link #get(Map)} wraps one in a fresh {@code Huffman} so compression statistics are never
+ * shared between callers. The least recently used model is evicted once the cache is full.
+ *
+ * Safe for concurrent use.
+ */
+public class HuffmanModelCache {
+    /** Capacity of {@link #getDefault()}. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final HuffmanModelCache DEFAULT = new HuffmanModelCache(DEFAULT_CAPACITY);
+
+    private final Map<Fingerprint, HuffmanCodec> models;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity the most models to keep
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public HuffmanModelCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("non-positive capacity");
+        }
+        models = new LinkedHashMap<Fingerprint, HuffmanCodec>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Fingerprint, HuffmanCodec> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return the process-wide cache
+     */
+    public static HuffmanModelCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns an instance equivalent to {@code new Huffman(alphabet)}, building the model only if
+     * no equal frequency map is cached.
+     *
+     * @param alphabet a frequency map for characters in the alphabet
+     * @return a {@code Huffman} instance with its own statistics
+     * @throws IllegalArgumentException if the alphabet is null, empty, has fewer than 2 characters,
+     * or has any non-positive frequencies
+     */
+    public Huffman get(Map<Character, Integer> alphabet) {
+        return new Huffman(getCodec(alphabet));
+    }
+
+    /**
+     * Returns the codec of {@code new Huffman(alphabet)}, building it only if no equal frequency
+     * map is cached. The same instance is returned to every caller with an equal map.
+     *
+     * @param alphabet a frequency map for characters in the alphabet
+     * @return the shared codec for alphabet
+     * @throws IllegalArgumentException if the alphabet is null, empty, has fewer than 2 characters,
+     * or has any non-positive frequencies
+     */
+    public HuffmanCodec getCodec(Map<Character, Integer> alphabet) {
+        if (alphabet == null) {
+            throw new IllegalArgumentException("alphabet null");
+        }
+        Fingerprint key = new Fingerprint(alphabet);
+        HuffmanCodec model;
+        synchronized (this) {
+            model = models.get(key);
+            if (model != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (model == null) {
+            //built outside the lock, a concurrent miss on the same map just builds it twice
+            model = new Huffman(alphabet).getCodec();
+            synchronized (this) {
+                models.put(key, model);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to build a model
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of models currently cached
+     */
+    public synchronized int size() {
+        return models.size();
+    }
+
+    /**
+     * Drops every cached model. The hit and miss counts are kept.
+     */
+    public synchronized void clear() {
+        models.clear();
+    }
+
+    //the frequency table in letter order, compared exactly so distinct maps never collide
+    private static final class Fingerprint {
+        private final char[] letters;
+        private final int[] counts;
+        private final int hash;
+
+        Fingerprint(Map<Character, Integer> alphabet) {
+            SortedMap<Character, Integer> sorted = new TreeMap<Character, Integer>(alphabet);
+            letters = new char[sorted.size()];
+            counts = new int[sorted.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : sorted.entrySet()) {
+                letters[i] = entry.getKey();
+                counts[i++] = entry.getValue();
+            }
+            hash = 31 * Arrays.hashCode(letters) + Arrays.hashCode(counts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return hash == other.hash && Arrays.equals(letters, other.letters)
+                    && Arrays.equals(counts, other.counts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
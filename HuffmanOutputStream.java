@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link OutputStream} that compresses the bytes written to it, each byte taken as the char
+ * of the same value (0 to 255), with a {@link Huffman} encoding. The compressed stream has the
+ * format of {@link HuffmanWriter} and is read back by {@link HuffmanInputStream}. Not safe for
+ * concurrent use.
+ */
+public class HuffmanOutputStream extends OutputStream {
+    private final HuffmanWriter writer;
+    private final char[] chars = new char[4096];
+
+    /**
+     * @param out the stream to write the compressed frames to
+     * @param huffman the encoding to compress with, whose alphabet holds the byte values written
+     * @throws IllegalArgumentException if out or huffman is null
+     */
+    public HuffmanOutputStream(OutputStream out, Huffman huffman) {
+        writer = new HuffmanWriter(out, huffman);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if the byte is not compressible
+     */
+    @Override
+    public void write(int b) throws IOException {
+        writer.write(b & 0xFF);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if any of the bytes is not compressible
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, chars.length);
+            for (int i = 0; i < n; i++) {
+                chars[i] = (char) (b[off + i] & 0xFF);
+            }
+            writer.write(chars, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * A {@link Reader} that decompresses a stream written by {@link HuffmanWriter} with the same
+ * {@link Huffman} encoding. One frame of packed bits is held in memory at a time. Not safe for
+ * concurrent use.
+ */
+public class HuffmanReader extends Reader {
+    private final DataInputStream in;
+    private final HuffmanCodec codec;
+    private final DecodeTable table;
+    private byte[] frameData = new byte[0];
+    //bits of the current frame not decoded yet, null before the first frame
+    private BitReader frame;
+    //decoded chars of the current frame, only used when the tables can not decode the codes
+    private String frameText;
+    private int frameTextPos;
+    private boolean ended;
+    private boolean closed;
+
+    /**
+     * @param in the stream of compressed frames
+     * @param huffman the encoding the stream was compressed with
+     * @throws IllegalArgumentException if in or huffman is null
+     */
+    public HuffmanReader(InputStream in, Huffman huffman) {
+        if (in == null) {
+            throw new IllegalArgumentException("in null");
+        }
+        if (huffman == null) {
+            throw new IllegalArgumentException("huffman null");
+        }
+        this.in = new DataInputStream(in);
+        codec = huffman.getCodec();
+        table = codec.decodeTable();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the stream is closed, ends before its end marker, or holds bits
+     * that are not decodable
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (!ended) {
+            if (frameText != null && frameTextPos < frameText.length()) {
+                int n = Math.min(len, frameText.length() - frameTextPos);
+                frameText.getChars(frameTextPos, frameTextPos + n, cbuf, off);
+                frameTextPos += n;
+                return n;
+            }
+            if (frame != null && frame.remaining() > 0) {
+                try {
+                    return table.decode(frame, cbuf, off, len);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("corrupt Huffman stream", e);
+                }
+            }
+            nextFrame();
+        }
+        return -1;
+    }
+
+    private void nextFrame() throws IOException {
+        int bits = in.readInt();
+        if (bits < 0) {
+            throw new IOException("corrupt Huffman stream: negative frame length");
+        }
+        if (bits == 0) {
+            ended = true;
+            return;
+        }
+        int bytes = (int) ((bits + 7L) / 8);
+        //a writer can overshoot its frame size by one slice of chars at most
+        if (bytes > 2 * HuffmanWriter.MAX_FRAME_BYTES + 8) {
+            throw new IOException("corrupt Huffman stream: frame too long");
+        }
+        if (frameData.length < bytes) {
+            frameData = new byte[bytes];
+        }
+        in.readFully(frameData, 0, bytes);
+        frame = new BitReader(frameData, bits);
+        if (table == null) {
+            try {
+                frameText = codec.decompressByTree(frame);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("corrupt Huffman stream", e);
+            }
+            frameTextPos = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        in.close();
+    }
+}
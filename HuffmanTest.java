@@ -1,6 +1,26 @@
+import org.junit.Rule;
 import org.junit.Test;
-
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -141,6 +161,91 @@ public class HuffmanTest {
     }
 
 
+    //two-queue construction should build the same tree as the pqueue
+    @Test
+    public void testBuildTwoQueueSameCodes() {
+        Random r = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
+            int size = 2 + r.nextInt(60);
+            for (int i = 0; i < size; i++) {
+                alphabet.put((char) ('0' + i), 1 + r.nextInt(round % 2 == 0 ? 5 : 1000));
+            }
+            Huffman heap = new Huffman(alphabet, Huffman.Construction.HEAP);
+            Huffman twoQueue = new Huffman(alphabet, Huffman.Construction.TWO_QUEUE);
+            for (char c : alphabet.keySet()) {
+                assertEquals(heap.compress("" + c), twoQueue.compress("" + c));
+            }
+        }
+        Huffman h = new Huffman("aaabbbccdd", Huffman.Construction.TWO_QUEUE);
+        assertEquals("10110001", h.compress("abcd"));
+    }
+
+    @Test
+    public void testBuildFromSortedCounts() {
+        //frequency order, as a counting pass would hand it over, and an arbitrary order
+        char[][] letters = {{'z', 'a', 'm', 'q', 'b'}, {'q', 'z', 'b', 'a', 'm'}};
+        long[][] counts = {{1, 2, 2, 3, 5}, {3, 1, 5, 2, 2}};
+        for (int round = 0; round < letters.length; round++) {
+            Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
+            for (int i = 0; i < letters[round].length; i++) {
+                alphabet.put(letters[round][i], (int) counts[round][i]);
+            }
+            Huffman sorted = new Huffman(letters[round], counts[round]);
+            Huffman heap = new Huffman(alphabet);
+            for (char c : letters[round]) {
+                assertEquals(heap.codeFor(c), sorted.codeFor(c));
+            }
+            assertEquals("zambq", sorted.decompress(sorted.compress("zambq")));
+        }
+    }
+
+    @Test
+    public void testBuildFromSkewedLongCounts() {
+        char[] letters = new char[80];
+        long[] counts = new long[80];
+        long a = 1;
+        long b = 1;
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('0' + i);
+            counts[i] = a;
+            long c = a + b;
+            a = b;
+            b = c;
+        }
+        Huffman h = new Huffman(letters, counts);
+        assertEquals(57, h.codeFor('0').length());
+        String text = new String(letters);
+        assertEquals(text, h.decompress(h.compressToBytes(text), h.encodedLength(text)));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBuildFromCountsLetterRepeats() {
+        new Huffman(new char[] {'b', 'a', 'b'}, new long[] {1, 2, 3});
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBuildNullConstruction() {
+        new Huffman("abc", null);
+    }
+
+    //weights are exact counts, even past the range of int
+    @Test
+    public void testBuildFromMapLargeCounts() {
+        Map<Character, Integer> alphabet = new TreeMap<Character, Integer>();
+        alphabet.put('a', Integer.MAX_VALUE);
+        alphabet.put('b', Integer.MAX_VALUE - 1);
+        alphabet.put('c', Integer.MAX_VALUE);
+        Huffman h = new Huffman(alphabet);
+        Huffman.Node n = h.getQueue().extractMin();
+        assertEquals(3L * Integer.MAX_VALUE - 1, n.getWeight());
+        assertEquals(1.0, n.getFreq(), 0.01);
+        //b is the lightest, then a wins the tie with c by letter
+        assertEquals('c', n.getLeftChild().getLetter());
+        assertEquals('b', n.getRightChild().getLeftChild().getLetter());
+        assertEquals('a', n.getRightChild().getRightChild().getLetter());
+    }
+
     //---------------test on buildingn from seed-----------
 
     @Test (expected = IllegalArgumentException.class)
@@ -197,6 +302,18 @@ public class HuffmanTest {
     }
 
 
+    @Test
+    public void testParallelCountMatchesSerial() {
+        Random r = new Random(11);
+        StringBuilder seed = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            seed.append((char) (r.nextInt(300) * r.nextInt(300)));
+        }
+        int[] serial = FrequencyCounter.count(seed);
+        assertArrayEquals(serial, FrequencyCounter.countParallel(seed, 1000));
+        assertArrayEquals(serial, FrequencyCounter.countParallel(seed.toString(), 99999));
+    }
+
     //---------------now testing on valid seeds
     @Test
     public void testBuildFromSeed2Char() {
@@ -508,6 +625,28 @@ public class HuffmanTest {
         assertEquals("d", h.decompress("111"));
     }
 
+    //fibonacci frequencies give codes longer than the primary decode table
+    @Test
+    public void testDcpLongCodes() {
+        Huffman h = new Huffman(fibonacciAlphabet(24));
+        Random r = new Random(42);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            input.append((char) ('0' + r.nextInt(24)));
+        }
+        String bits = h.compress(input.toString());
+        assertEquals(input.toString(), h.decompress(bits));
+        assertEquals(h.getCodec().decompressByTree(new BitReader(Huffman.fromBitString(bits), bits.length())),
+                h.decompress(bits));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDcpLongCodesTruncated() {
+        Huffman h = new Huffman(fibonacciAlphabet(24));
+        String bits = h.compress("001");
+        h.decompress(bits.substring(0, bits.length() - 1));
+    }
+
     //--------------------test on compress-------------
     @Test (expected = IllegalArgumentException.class)
     public void testCompressInvalid() {
@@ -520,6 +659,18 @@ public class HuffmanTest {
         h.compress("abcde");
     }
 
+    //chars past the largest letter and gaps between letters
+    @Test (expected = IllegalArgumentException.class)
+    public void testCompressInvalidWideChar() {
+        Huffman h = new Huffman("aaabbcd");
+        h.compress("a\u20ac");
+    }
+    @Test (expected = IllegalArgumentException.class)
+    public void testCompressInvalidGap() {
+        Huffman h = new Huffman("aaabbcd");
+        h.compress("b\u0000");
+    }
+
     @Test
     public void testCompressInput1() {
 
@@ -607,6 +758,839 @@ public class HuffmanTest {
 
     }
 
+    //round trip over a bigger alphabet
+    @Test
+    public void testCompressRoundTripLarge() {
+        StringBuilder seed = new StringBuilder();
+        for (char c = 'a'; c <= 'z'; c++) {
+            for (int i = 0; i <= c - 'a'; i++) {
+                seed.append(c);
+            }
+        }
+        Huffman h = new Huffman(seed.toString());
+        String input = seed.reverse().toString() + "zebra";
+        assertEquals(input, h.decompress(h.compress(input)));
+    }
+
+    //--------------------test on packed bits-------------
+    @Test
+    public void testCompressToBytes() {
+        Huffman h = new Huffman("aaabbcd");
+        //"010110111" packed msb first
+        assertEquals(9, h.encodedLength("abcd"));
+        assertArrayEquals(new byte[] {(byte) 0x5B, (byte) 0x80}, h.compressToBytes("abcd"));
+        assertEquals("abcd", h.decompress(h.compressToBytes("abcd"), 9));
+        assertEquals("", h.decompress(new byte[0], 0));
+    }
+
+    @Test
+    public void testCompressToBuffer() {
+        Huffman h = new Huffman("aaabbcd");
+        ByteBuffer out = ByteBuffer.allocate(4);
+        out.put((byte) 7);
+        assertEquals(9, h.compressTo("abcd", out));
+        assertEquals(3, out.position());
+        assertEquals((byte) 0x5B, out.get(1));
+        assertEquals((byte) 0x80, out.get(2));
+    }
+
+    @Test (expected = BufferOverflowException.class)
+    public void testCompressToSmallBuffer() {
+        Huffman h = new Huffman("aaabbcd");
+        h.compressTo("abcd", ByteBuffer.allocate(1));
+    }
+
+    @Test
+    public void testBufferRoundTrip() {
+        Huffman h = new Huffman("aabcddefgh");
+        Random r = new Random(29);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5001; i++) {
+            input.append((char) ('a' + r.nextInt(8)));
+        }
+        byte[] expected = h.compressToBytes(input.toString());
+        for (boolean direct : new boolean[] {false, true}) {
+            CharBuffer chars = direct
+                    ? ByteBuffer.allocateDirect(2 * input.length()).asCharBuffer()
+                    : CharBuffer.allocate(input.length());
+            chars.put(input.toString()).flip();
+            ByteBuffer packed = direct
+                    ? ByteBuffer.allocateDirect(expected.length + 3)
+                    : ByteBuffer.allocate(expected.length + 3);
+            packed.put((byte) 1);
+            long bits = h.compressTo(chars, packed);
+            assertEquals(h.encodedLength(input.toString()), bits);
+            assertFalse(chars.hasRemaining());
+            assertEquals(expected.length + 1, packed.position());
+            byte[] written = new byte[expected.length];
+            packed.position(1);
+            packed.get(written);
+            assertArrayEquals(expected, written);
+
+            packed.position(1);
+            CharBuffer decoded = direct
+                    ? ByteBuffer.allocateDirect(2 * input.length()).asCharBuffer()
+                    : CharBuffer.allocate(input.length());
+            assertEquals(input.length(), h.decompressTo(packed, bits, decoded));
+            assertEquals(expected.length + 1, packed.position());
+            decoded.flip();
+            assertEquals(input.toString(), decoded.toString());
+        }
+    }
+
+    @Test
+    public void testByteBufferRoundTrip() {
+        Huffman h = new Huffman("aabcddefgh");
+        ByteBuffer input = ByteBuffer.allocateDirect(6);
+        input.put("hagged".getBytes()).flip();
+        ByteBuffer packed = ByteBuffer.allocateDirect(8);
+        long bits = h.compressTo(input, packed);
+        assertEquals(h.encodedLength("hagged"), bits);
+        packed.flip();
+        ByteBuffer decoded = ByteBuffer.allocate(6);
+        assertEquals(6, h.decompressTo(packed, bits, decoded));
+        assertArrayEquals("hagged".getBytes(), decoded.array());
+    }
+
+    @Test
+    public void testCompressToBufferNotInAlphabet() {
+        Huffman h = new Huffman("aaabbcd");
+        CharBuffer input = CharBuffer.wrap("abz");
+        ByteBuffer out = ByteBuffer.allocate(8);
+        try {
+            h.compressTo(input, out);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, input.position());
+            assertEquals(0, out.position());
+        }
+    }
+
+    @Test (expected = BufferOverflowException.class)
+    public void testDecompressToSmallBuffer() {
+        Huffman h = new Huffman("aaabbcd");
+        ByteBuffer packed = ByteBuffer.wrap(h.compressToBytes("abcd"));
+        h.decompressTo(packed, 9, CharBuffer.allocate(3));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDcpBytesTruncated() {
+        Huffman h = new Huffman("aaabbcd");
+        h.decompress(h.compressToBytes("abcd"), 8);
+    }
+
+    //Fibonacci counts give the deepest tree, with codes as long as the alphabet less one
+    private static Map<Character, Integer> fibonacciAlphabet(int size) {
+        Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
+        int a = 1;
+        int b = 1;
+        for (int i = 0; i < size; i++) {
+            alphabet.put((char) ('0' + i), a);
+            int c = a + b;
+            a = b;
+            b = c;
+        }
+        return alphabet;
+    }
+
+    @Test
+    public void testDeepCodesRoundTrip() {
+        for (int size : new int[] {12, 20, 40, 44, 46}) {
+            Huffman h = new Huffman(fibonacciAlphabet(size));
+            StringBuilder b = new StringBuilder();
+            for (char c = '0'; c < '0' + size; c++) {
+                b.append(c).append('0');
+            }
+            String input = b.toString();
+            assertEquals(size - 1, h.codeFor('0').length());
+            assertEquals(input, h.decompress(h.compress(input)));
+            assertEquals(input, h.decompress(h.compressToBytes(input), h.encodedLength(input)));
+        }
+    }
+
+    //--------------------test on block encoding-------------
+    @Test
+    public void testBlockEncodeMatchesSerial() {
+        Huffman h = new Huffman("aabcddefgh");
+        Random r = new Random(5);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 10007; i++) {
+            input.append((char) ('a' + r.nextInt(8)));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            EncodedBlocks blocks = new BlockEncoder(h, 1000, pool).encode(input.toString());
+            assertEquals(11, blocks.getBlockCount());
+            assertEquals(input.length(), blocks.getSymbolCount());
+            assertEquals(7, blocks.getBlockSymbols(10));
+            assertEquals(h.encodedLength(input.substring(0, 3000)), blocks.getBlockOffset(3));
+            assertEquals(h.encodedLength(input.toString()), blocks.getBitLength());
+            assertArrayEquals(h.compressToBytes(input.toString()), blocks.getData());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBlockEncodeInvalid() {
+        Huffman h = new Huffman("aabcddefgh");
+        new BlockEncoder(h, 2, ForkJoinPool.commonPool()).encode("abcdefgz");
+    }
+
+    @Test
+    public void testBlockContainerRoundTrip() {
+        Huffman h = new Huffman("aaabbcd");
+        Random r = new Random(9);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5003; i++) {
+            input.append((char) ('a' + r.nextInt(4)));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            EncodedBlocks blocks = new BlockEncoder(h, 500, pool).encode(input.toString());
+            EncodedBlocks read = EncodedBlocks.fromByteArray(blocks.toByteArray());
+            assertEquals(blocks.getBlockCount(), read.getBlockCount());
+            assertEquals(input.toString(), new BlockDecoder(h, pool).decode(read));
+            assertEquals("", new BlockDecoder(h).decode(new BlockEncoder(h).encode("")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBlockContainerTruncated() {
+        Huffman h = new Huffman("aaabbcd");
+        byte[] bytes = new BlockEncoder(h, 2, ForkJoinPool.commonPool()).encode("abcdabcd").toByteArray();
+        EncodedBlocks.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testBlockDecodeWrongIndex() {
+        Huffman h = new Huffman("aaabbcd");
+        byte[] bytes = new BlockEncoder(h, 2, ForkJoinPool.commonPool()).encode("abcdabcd").toByteArray();
+        //first block claims three symbols instead of two
+        bytes[16 + 11] = 3;
+        new BlockDecoder(h).decode(EncodedBlocks.fromByteArray(bytes));
+    }
+
+    //codes deeper than the decode tables, which leaves the codec with the tree walk only
+    @Test
+    public void testBlockDecodeWithoutTables() {
+        int size = 60;
+        char[] letters = new char[size];
+        long[] counts = new long[size];
+        Huffman.Node root = new Huffman.Node(1, '0', size);
+        letters[0] = '0';
+        counts[0] = 1;
+        for (int i = 1; i < size; i++) {
+            letters[i] = (char) ('0' + i);
+            counts[i] = 1;
+            root = new Huffman.Node(root, new Huffman.Node(1, letters[i], size), i - 1);
+        }
+        HuffmanCodec codec = new HuffmanCodec(letters, counts, root);
+        assertNull(codec.decodeTable());
+        Huffman h = new Huffman(codec);
+        String input = "0" + (char) ('0' + 59) + "10" + (char) ('0' + 30) + "0";
+        EncodedBlocks blocks = new BlockEncoder(h, 2, ForkJoinPool.commonPool()).encode(input);
+        assertEquals(input, new BlockDecoder(h).decode(blocks));
+        //move one symbol between the first two blocks, keeping the total
+        byte[] bytes = blocks.toByteArray();
+        bytes[16 + 11] = 1;
+        bytes[16 + 12 + 11] = 3;
+        try {
+            new BlockDecoder(h).decode(EncodedBlocks.fromByteArray(bytes));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("invalid", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBlockContainerCorruptIndex() {
+        Huffman h = new Huffman("aaabbcd");
+        byte[] bytes = new BlockEncoder(h, 2, ForkJoinPool.commonPool()).encode("abcdabcd").toByteArray();
+        //first block starting past the first bit
+        byte[] skipped = bytes.clone();
+        skipped[16 + 7] = 1;
+        //first block claiming more symbols than it has bits
+        byte[] overfull = bytes.clone();
+        overfull[16 + 10] = 1;
+        for (byte[] corrupt : new byte[][] {skipped, overfull}) {
+            try {
+                EncodedBlocks.fromByteArray(corrupt);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertEquals("corrupt block index", e.getMessage());
+            }
+        }
+    }
+
+    //--------------------test on canonical models-------------
+    @Test
+    public void testCanonicalCodes() {
+        //tree codes: a = 110, b = 000, c = 001, d = 111, e = 010, ...
+        Huffman h = new Huffman("aabcddefgh");
+        assertFalse(h.isCanonical());
+        Huffman c = h.canonical();
+        assertTrue(c.isCanonical());
+        assertEquals(h.expectedEncodingLength(), c.expectedEncodingLength(), 0.0001);
+        assertEquals("000", c.codeFor('a'));
+        assertEquals("001", c.codeFor('b'));
+        assertEquals("111", c.codeFor('h'));
+        assertEquals("bad", c.decompress(c.compress("bad")));
+    }
+
+    @Test
+    public void testModelBytesRoundTrip() {
+        Huffman h = new Huffman("the quick brown fox jumps over the lazy dog").canonical();
+        byte[] model = h.toModelBytes();
+        assertEquals(8 + 3 * 27, model.length);
+        Huffman loaded = Huffman.fromModelBytes(model);
+        assertTrue(loaded.isCanonical());
+        assertArrayEquals(model, loaded.toModelBytes());
+        String text = "lazy dogs jump over quick foxes";
+        assertEquals(h.compress(text), loaded.compress(text));
+        assertEquals(text, loaded.decompress(h.compress(text)));
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void testModelBytesNotCanonical() {
+        new Huffman("aabcddefgh").toModelBytes();
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testModelBytesIncomplete() {
+        byte[] model = new Huffman("abc").toModelBytes();
+        //give the last letter a longer code than the code has room for
+        model[model.length - 1] = 3;
+        Huffman.fromModelBytes(model);
+    }
+
+    //a complete code of lengths 1, 2, ..., size - 1, size - 1, as a hostile model would declare
+    private static byte[] deepModel(int size) {
+        ByteBuffer model = ByteBuffer.allocate(8 + 3 * size);
+        model.putInt(Huffman.MODEL_MAGIC);
+        model.putInt(size);
+        for (int i = 0; i < size; i++) {
+            model.putChar((char) ('0' + i));
+            model.put((byte) Math.min(i + 1, size - 1));
+        }
+        return model.array();
+    }
+
+    @Test
+    public void testModelBytesHostileLengths() {
+        //the deepest model accepted loads quickly and decodes
+        Huffman h = Huffman.fromModelBytes(deepModel(58));
+        assertEquals(57, h.codeFor((char) ('0' + 57)).length());
+        String text = "0" + (char) ('0' + 57) + (char) ('0' + 40);
+        assertEquals(text, h.decompress(h.compressToBytes(text), h.encodedLength(text)));
+        try {
+            Huffman.fromModelBytes(deepModel(60));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("model code length too long", e.getMessage());
+        }
+    }
+
+    //--------------------test on length-limited codes-------------
+    @Test
+    public void testLengthLimited() {
+        Map<Character, Integer> alphabet = fibonacciAlphabet(24);
+        Huffman unlimited = new Huffman(alphabet);
+        Huffman loose = new Huffman(alphabet, 57);
+        Huffman limited = new Huffman(alphabet, 8);
+        assertEquals(unlimited.expectedEncodingLength(), loose.expectedEncodingLength(), 1e-9);
+        assertTrue(limited.expectedEncodingLength() > unlimited.expectedEncodingLength());
+        assertTrue(limited.isCanonical());
+        for (char c : alphabet.keySet()) {
+            assertTrue(limited.codeFor(c).length() <= 8);
+        }
+        String text = "0123456789:;<=>?@ABCDEFG";
+        assertEquals(text, limited.decompress(limited.compress(text)));
+        Huffman.fromModelBytes(limited.toModelBytes());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testLengthLimitPastDecodeTables() {
+        new Huffman(fibonacciAlphabet(20), 58);
+    }
+
+    @Test
+    public void testLengthLimitedTight() {
+        Map<Character, Integer> alphabet = new TreeMap<Character, Integer>();
+        alphabet.put('a', 100);
+        alphabet.put('b', 1);
+        alphabet.put('c', 1);
+        alphabet.put('d', 1);
+        Huffman h = new Huffman(alphabet, 2);
+        assertEquals(2.0, h.expectedEncodingLength(), 1e-9);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testLengthLimitTooSmall() {
+        Map<Character, Integer> alphabet = new TreeMap<Character, Integer>();
+        alphabet.put('a', 1);
+        alphabet.put('b', 1);
+        alphabet.put('c', 1);
+        new Huffman(alphabet, 1);
+    }
+
+    //--------------------test on the model cache-------------
+    @Test
+    public void testModelCache() {
+        HuffmanModelCache cache = new HuffmanModelCache(2);
+        Map<Character, Integer> abc = Huffman.createMapFromSeed("aaabbcd");
+        Huffman first = cache.get(abc);
+        Huffman second = cache.get(new TreeMap<Character, Integer>(abc));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertNotSame(first, second);
+        assertSame(first.getCodec(), cache.getCodec(abc));
+        assertEquals(new Huffman(abc).compress("abcd"), second.compress("abcd"));
+        assertEquals("dcba", second.decompress(first.compress("dcba")));
+        //statistics stay per instance
+        first.compress("aaaa");
+        assertEquals(9 / 16.0 / 4, second.compressionRatio(), 0.0001);
+
+        cache.get(Huffman.createMapFromSeed("ab"));
+        cache.get(Huffman.createMapFromSeed("abc"));
+        assertEquals(2, cache.size());
+        //least recently used was evicted
+        cache.get(abc);
+        assertEquals(4, cache.getMisses());
+    }
+
+    //--------------------test on byte huffman-------------
+    @Test
+    public void testByteHuffmanRoundTrip() {
+        byte[] input = new byte[20000];
+        Random r = new Random(31);
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (byte) (r.nextInt(16) * r.nextInt(16) - 128);
+        }
+        ByteHuffman h = new ByteHuffman(input);
+        byte[] packed = h.compress(input);
+        long bits = h.encodedLength(input, 0, input.length);
+        assertEquals((bits + 7) / 8, packed.length);
+        assertArrayEquals(input, h.decompress(packed, bits));
+        byte[] out = new byte[input.length + 2];
+        assertEquals(input.length, h.decompress(packed, bits, out, 2));
+        assertArrayEquals(input, Arrays.copyOfRange(out, 2, out.length));
+    }
+
+    @Test
+    public void testByteHuffmanMatchesHuffman() {
+        String seed = "the quick brown fox jumps over the lazy dog";
+        long[] counts = new long[256];
+        for (char c : seed.toCharArray()) {
+            counts[c]++;
+        }
+        ByteHuffman bytes = new ByteHuffman(counts);
+        assertEquals(new Huffman(seed).expectedEncodingLength(), bytes.expectedEncodingLength(),
+                1e-9);
+        //ties may be broken differently, but the code is just as short
+        assertEquals(new Huffman(seed).encodedLength(seed),
+                bytes.encodedLength(seed.getBytes(), 0, seed.length()));
+        ByteHuffman limited = new ByteHuffman(counts, 5);
+        for (char c : seed.toCharArray()) {
+            assertTrue(limited.codeLength((byte) c) <= 5);
+        }
+    }
+
+    @Test
+    public void testByteHuffmanSkewedCounts() {
+        for (int size : new int[] {38, 45, 55}) {
+            long[] counts = new long[256];
+            long a = 1;
+            long b = 1;
+            byte[] input = new byte[size];
+            for (int i = 0; i < size; i++) {
+                counts[i] = a;
+                long c = a + b;
+                a = b;
+                b = c;
+                input[i] = (byte) i;
+            }
+            ByteHuffman h = new ByteHuffman(counts);
+            for (byte x : input) {
+                assertTrue(h.codeLength(x) <= ByteHuffman.DEFAULT_MAX_CODE_LENGTH);
+            }
+            assertArrayEquals(input,
+                    h.decompress(h.compress(input), h.encodedLength(input, 0, size)));
+            ByteHuffman deep = new ByteHuffman(counts, 57);
+            assertEquals(Math.min(size - 1, 57), deep.codeLength((byte) 0));
+            assertArrayEquals(input,
+                    deep.decompress(deep.compress(input), deep.encodedLength(input, 0, size)));
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testByteHuffmanNotInAlphabet() {
+        new ByteHuffman(new byte[] {1, 2, 2}).compress(new byte[] {1, 3});
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testByteHuffmanOneByte() {
+        new ByteHuffman(new byte[] {4, 4, 4});
+    }
+
+    //--------------------test on int and symbol huffman-------------
+    @Test
+    public void testIntHuffmanRoundTrip() {
+        Random r = new Random(37);
+        //dense ids, sparse ids and an alphabet too large for the decode tables
+        int[][] alphabets = {{0, 1, 100}, {-1000000000, 30011, 5000}, {0, 1, 70000}};
+        for (int[] alphabet : alphabets) {
+            int size = alphabet[2];
+            int[] input = new int[size + 30000];
+            for (int i = 0; i < input.length; i++) {
+                //every id once, then skewed towards the first 20
+                int id = i < size ? i : r.nextBoolean() ? r.nextInt(20) : r.nextInt(size);
+                input[i] = alphabet[0] + alphabet[1] * id;
+            }
+            IntHuffman h = new IntHuffman(input);
+            byte[] packed = h.compress(input);
+            long bits = h.encodedLength(input, 0, input.length);
+            assertEquals((bits + 7) / 8, packed.length);
+            assertArrayEquals(input, h.decompress(packed, bits));
+        }
+    }
+
+    @Test
+    public void testIntHuffmanSkewedCounts() {
+        int size = 60;
+        int[] symbols = new int[size];
+        long[] counts = new long[size];
+        long a = 1;
+        long b = 1;
+        for (int i = 0; i < size; i++) {
+            symbols[i] = 7 * i;
+            counts[i] = a;
+            long c = a + b;
+            a = b;
+            b = c;
+        }
+        IntHuffman h = new IntHuffman(symbols, counts);
+        assertEquals(IntHuffman.DEFAULT_MAX_CODE_LENGTH, h.codeLength(0));
+        assertArrayEquals(symbols,
+                h.decompress(h.compress(symbols), h.encodedLength(symbols, 0, size)));
+        IntHuffman deep = new IntHuffman(symbols, counts, 57);
+        assertEquals(57, deep.codeLength(0));
+        assertArrayEquals(symbols,
+                deep.decompress(deep.compress(symbols), deep.encodedLength(symbols, 0, size)));
+    }
+
+    @Test
+    public void testIntHuffmanMatchesHuffman() {
+        String seed = "the quick brown fox jumps over the lazy dog";
+        int[] symbols = new int[seed.length()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = seed.charAt(i) * 1000;
+        }
+        IntHuffman h = new IntHuffman(symbols);
+        assertEquals(new Huffman(seed).expectedEncodingLength(), h.expectedEncodingLength(), 1e-9);
+        assertEquals(new Huffman(seed).encodedLength(seed), h.encodedLength(symbols, 0, symbols.length));
+        assertEquals(27, h.size());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testIntHuffmanNotInAlphabet() {
+        new IntHuffman(new int[] {1, 2, 2}).compress(new int[] {1, 3});
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testIntHuffmanRepeatedSymbol() {
+        new IntHuffman(new int[] {1, 2, 1}, new long[] {1, 1, 1});
+    }
+
+    @Test
+    public void testSymbolHuffmanWords() {
+        List<String> words = Arrays.asList(
+                "GET /index.html 200 GET /index.html 200 POST /login 302 GET /favicon.ico 404"
+                        .split(" "));
+        SymbolHuffman<String> h = new SymbolHuffman<String>(words);
+        byte[] packed = h.compress(words);
+        assertEquals(words, h.decompress(packed, h.encodedLength(words)));
+        assertEquals("POST", h.symbolOf(h.idOf("POST")));
+        assertTrue(h.getIntHuffman().codeLength(h.idOf("GET"))
+                <= h.getIntHuffman().codeLength(h.idOf("/favicon.ico")));
+    }
+
+    @Test
+    public void testSymbolHuffmanIterationOrder() {
+        //ties in every count, inserted in opposite orders
+        Map<String, Integer> forward = new LinkedHashMap<String, Integer>();
+        Map<String, Integer> backward = new LinkedHashMap<String, Integer>();
+        String[] words = {"to", "be", "or", "not", "that", "is", "the", "question"};
+        for (int i = 0; i < words.length; i++) {
+            forward.put(words[i], 1 + i / 3);
+        }
+        for (int i = words.length - 1; i >= 0; i--) {
+            backward.put(words[i], 1 + i / 3);
+        }
+        SymbolHuffman<String> encoder = new SymbolHuffman<String>(forward);
+        SymbolHuffman<String> decoder = new SymbolHuffman<String>(backward);
+        List<String> input = Arrays.asList(words);
+        for (String word : words) {
+            assertEquals(encoder.idOf(word), decoder.idOf(word));
+        }
+        assertEquals(input, decoder.decompress(encoder.compress(input),
+                encoder.encodedLength(input)));
+        //most frequent first, ties in natural order
+        assertEquals("question", encoder.symbolOf(0));
+        assertEquals("the", encoder.symbolOf(1));
+        assertEquals("is", encoder.symbolOf(2));
+        assertEquals("be", encoder.symbolOf(5));
+
+        SymbolHuffman<String> reversed = new SymbolHuffman<String>(forward,
+                Collections.<String>reverseOrder());
+        assertEquals("the", reversed.symbolOf(0));
+        TreeMap<String, Integer> sorted = new TreeMap<String, Integer>(
+                Collections.<String>reverseOrder());
+        sorted.putAll(backward);
+        assertEquals("the", new SymbolHuffman<String>(sorted).symbolOf(0));
+    }
+
+    @Test
+    public void testSymbolHuffmanTableBytes() {
+        List<String> words = Arrays.asList("a rose is a rose is a rose".split(" "));
+        SymbolHuffman<String> h = new SymbolHuffman<String>(words);
+        byte[] table = h.toTableBytes(SymbolHuffman.STRINGS);
+        SymbolHuffman<String> loaded = SymbolHuffman.fromTableBytes(table, SymbolHuffman.STRINGS);
+        for (String word : words) {
+            assertEquals(h.idOf(word), loaded.idOf(word));
+        }
+        assertEquals(words, loaded.decompress(h.compress(words), h.encodedLength(words)));
+        assertArrayEquals(table, loaded.toTableBytes(SymbolHuffman.STRINGS));
+
+        for (int cut : new int[] {0, 6, 10, table.length - 1}) {
+            try {
+                SymbolHuffman.fromTableBytes(Arrays.copyOf(table, cut), SymbolHuffman.STRINGS);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        try {
+            SymbolHuffman.fromTableBytes(Arrays.copyOf(table, table.length + 1),
+                    SymbolHuffman.STRINGS);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testSymbolHuffmanTiesNotComparable() {
+        Map<Object, Integer> alphabet = new HashMap<Object, Integer>();
+        alphabet.put(new Object(), 2);
+        alphabet.put(new Object(), 2);
+        new SymbolHuffman<Object>(alphabet);
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testSymbolHuffmanNotInAlphabet() {
+        SymbolHuffman<String> h = new SymbolHuffman<String>(Arrays.asList("a", "b", "b"));
+        h.compress(Arrays.asList("a", "c"));
+    }
+
+    //--------------------test on file compression-------------
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        byte[] input = new byte[300000];
+        Random r = new Random(23);
+        for (int i = 0; i < input.length; i++) {
+            //skewed towards small values, so the file actually shrinks
+            input[i] = (byte) (r.nextInt(16) * r.nextInt(16));
+        }
+        for (byte[] content : new byte[][] {input, new byte[0], new byte[] {7, 7, 7}}) {
+            File in = folder.newFile();
+            File packed = folder.newFile();
+            File out = folder.newFile();
+            Files.write(in.toPath(), content);
+            long packedLength = HuffmanFileCompressor.compress(in.toPath(), packed.toPath());
+            assertEquals(packed.length(), packedLength);
+            assertEquals(content.length,
+                    HuffmanFileCompressor.decompress(packed.toPath(), out.toPath()));
+            assertArrayEquals(content, Files.readAllBytes(out.toPath()));
+        }
+        File in = folder.newFile();
+        File packed = folder.newFile();
+        Files.write(in.toPath(), input);
+        assertTrue(HuffmanFileCompressor.compress(in.toPath(), packed.toPath()) < input.length);
+    }
+
+    @Test (expected = IOException.class)
+    public void testFileTruncated() throws IOException {
+        File in = folder.newFile();
+        File packed = folder.newFile();
+        Files.write(in.toPath(), "the quick brown fox jumps over the lazy dog".getBytes("UTF-8"));
+        HuffmanFileCompressor.compress(in.toPath(), packed.toPath());
+        byte[] bytes = Files.readAllBytes(packed.toPath());
+        Files.write(packed.toPath(), Arrays.copyOf(bytes, bytes.length - 6));
+        HuffmanFileCompressor.decompress(packed.toPath(), folder.newFile().toPath());
+    }
+
+    @Test
+    public void testFileModelCodeTooLong() throws IOException {
+        byte[] model = deepModel(30);
+        ByteBuffer header = ByteBuffer.allocate(20 + model.length);
+        header.putInt(HuffmanFileCompressor.FILE_MAGIC);
+        header.putLong(1);
+        header.putInt(model.length);
+        header.put(model);
+        header.putInt(0);
+        File packed = folder.newFile();
+        Files.write(packed.toPath(), header.array());
+        File out = folder.newFile();
+        Files.write(out.toPath(), new byte[] {1, 2, 3});
+        try {
+            HuffmanFileCompressor.decompress(packed.toPath(), out.toPath());
+            fail();
+        } catch (IOException e) {
+            assertEquals("corrupt compressed file header: code too long", e.getMessage());
+        }
+        //a bad header leaves out as it was
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(out.toPath()));
+        File missing = new File(folder.getRoot(), "missing");
+        try {
+            HuffmanFileCompressor.decompress(packed.toPath(), missing.toPath());
+            fail();
+        } catch (IOException e) {
+            assertFalse(missing.exists());
+        }
+    }
+
+    //--------------------test on streams-------------
+    @Test
+    public void testWriterReaderRoundTrip() throws IOException {
+        Huffman h = new Huffman("aabcddefgh");
+        Random r = new Random(13);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            input.append((char) ('a' + r.nextInt(8)));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer w = new HuffmanWriter(bytes, h, 100);
+        w.write(input.substring(0, 7));
+        w.flush();
+        w.write(input.substring(7));
+        w.close();
+
+        Reader reader = new HuffmanReader(new ByteArrayInputStream(bytes.toByteArray()), h);
+        StringBuilder out = new StringBuilder();
+        char[] buf = new char[333];
+        for (int n = reader.read(buf); n != -1; n = reader.read(buf)) {
+            out.append(buf, 0, n);
+        }
+        assertEquals(input.toString(), out.toString());
+    }
+
+    @Test
+    public void testByteStreamRoundTrip() throws IOException {
+        Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
+        for (char c = 0; c < 256; c++) {
+            alphabet.put(c, 1 + c % 7);
+        }
+        Huffman h = new Huffman(alphabet);
+        byte[] input = new byte[10000];
+        new Random(17).nextBytes(input);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new HuffmanOutputStream(bytes, h);
+        out.write(input);
+        out.close();
+
+        InputStream in = new HuffmanInputStream(new ByteArrayInputStream(bytes.toByteArray()), h);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+            decoded.write(buf, 0, n);
+        }
+        assertArrayEquals(input, decoded.toByteArray());
+    }
+
+    @Test (expected = EOFException.class)
+    public void testReaderTruncated() throws IOException {
+        Huffman h = new Huffman("aabcddefgh");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer w = new HuffmanWriter(bytes, h);
+        w.write("abcdefgh");
+        w.close();
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 4);
+        Reader reader = new HuffmanReader(new ByteArrayInputStream(truncated), h);
+        while (reader.read() != -1) {
+            //drain
+        }
+    }
+
+    //--------------------test on adaptive huffman-------------
+    @Test
+    public void testAdaptiveRoundTrip() {
+        String[] inputs = {"", "a", "aaaa", "abracadabra", "mississippi river", "\u00e9t\u00e9 \u4e2d\uffff\u0000"};
+        for (String input : inputs) {
+            assertEquals(input, AdaptiveHuffman.decompress(AdaptiveHuffman.compress(input)));
+        }
+    }
+
+    @Test
+    public void testAdaptiveEscapesNewChars() {
+        //the first char is sent raw, later ones as the path to their leaf or to the NYT leaf
+        assertEquals("0000000001100001", AdaptiveHuffman.compress("a"));
+        assertEquals("00000000011000011", AdaptiveHuffman.compress("aa"));
+        assertEquals("000000000110000100000000001100010",
+                AdaptiveHuffman.compress("ab"));
+    }
+
+    @Test
+    public void testAdaptiveCloseToStatic() {
+        Random r = new Random(23);
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            //geometric letter frequencies
+            int k = 0;
+            while (k < 20 && r.nextBoolean()) {
+                k++;
+            }
+            b.append((char) ('a' + k));
+        }
+        String input = b.toString();
+        long adaptive = AdaptiveHuffman.compress(input).length();
+        long fixed = new Huffman(input).encodedLength(input);
+        assertTrue(adaptive + " vs " + fixed, adaptive < fixed * 1.02);
+    }
+
+    @Test
+    public void testAdaptiveWriterReaderRoundTrip() throws IOException {
+        Random r = new Random(29);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            //mostly ascii, with new chars showing up throughout the stream
+            input.append(r.nextInt(10) == 0 ? (char) r.nextInt(5000) : (char) ('a' + r.nextInt(8)));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Writer w = new AdaptiveHuffmanWriter(bytes, 100);
+        w.write(input.substring(0, 7));
+        w.flush();
+        w.write(input.charAt(7));
+        w.write(input.substring(8));
+        w.close();
+
+        Reader reader = new AdaptiveHuffmanReader(new ByteArrayInputStream(bytes.toByteArray()));
+        StringBuilder out = new StringBuilder();
+        char[] buf = new char[333];
+        for (int n = reader.read(buf); n != -1; n = reader.read(buf)) {
+            out.append(buf, 0, n);
+        }
+        assertEquals(input.toString(), out.toString());
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testAdaptiveDecompressTruncated() {
+        AdaptiveHuffman.decompress("000000000110000");
+    }
+
     //-----------test on compression ratio--------------------
     @Test
     public void testCompRatio1() {
@@ -652,6 +1636,52 @@ public class HuffmanTest {
 
     }
 
+    @Test
+    public void testCompRatioCountsPackedCalls() {
+        Huffman h = new Huffman("aaabbcd");
+        h.compress("abcd");
+        h.compressToBytes("abcd");
+        h.compressTo("", ByteBuffer.allocate(0));
+        assertEquals(18 / 16.0 / 8, h.compressionRatio(), 0.0001);
+    }
+
+    @Test (expected = IllegalStateException.class)
+    public void testCompRatioNoCalls() {
+        Huffman h = new Huffman("aaabbcd");
+        h.compressionRatio();
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        final Huffman h = new Huffman("aaabbcd");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(pool.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        boolean ok = true;
+                        for (int i = 0; i < 1000; i++) {
+                            ok &= "abcd".equals(h.decompress(h.compress("abcd")));
+                        }
+                        return ok;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        //no call is lost from the shared counters
+        assertEquals(9 / 16.0 / 4, h.compressionRatio(), 0.0001);
+        Huffman other = new Huffman(h.getCodec());
+        assertSame(h.getCodec(), other.getCodec());
+        other.compress("aaaa");
+        assertEquals(4 / 16.0 / 4, other.compressionRatio(), 0.0001);
+    }
+
     //---------------test on expectedEncodingLength
     @Test
     public void testEncLength1() {
@@ -667,5 +1697,11 @@ public class HuffmanTest {
         assertEquals(13.0 / 7, h.expectedEncodingLength(), 0.01);
     }
 
-
-}
\ No newline at end of file
+    @Test (expected = IllegalStateException.class)
+    public void testEncLengthLeavesStatsAlone() {
+        Huffman h = new Huffman("aaabbcd");
+        assertEquals(13.0 / 7, h.expectedEncodingLength(), 0.01);
+        assertEquals("110", h.codeFor('c'));
+        h.compressionRatio();
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that compresses the chars written to it with a {@link Huffman} encoding and
+ * writes the packed bits to an {@link OutputStream}. Only a bounded frame of packed bits is held
+ * in memory at a time, so arbitrarily long texts can be compressed with a fixed heap.
+ *
+ * The stream is a sequence of frames, each an int (big endian) holding the number of bits in the
+ * frame followed by those bits packed into bytes, ending with a frame of 0 bits. It is read back
+ * by {@link HuffmanReader}. Not safe for concurrent use.
+ */
+public class HuffmanWriter extends Writer {
+    /** Packed bytes buffered before a frame is written out, when not given. */
+    public static final int DEFAULT_FRAME_BYTES = 1 << 16;
+    /** Largest frame size, which keeps the bit count of a frame within an int. */
+    public static final int MAX_FRAME_BYTES = 1 << 26;
+
+    private final DataOutputStream out;
+    private final HuffmanCodec codec;
+    private final int frameBytes;
+    private final BitWriter frame;
+    private final char[] single = new char[1];
+    private boolean closed;
+
+    /**
+     * @param out the stream to write the compressed frames to
+     * @param huffman the encoding to compress with
+     * @throws IllegalArgumentException if out or huffman is null
+     */
+    public HuffmanWriter(OutputStream out, Huffman huffman) {
+        this(out, huffman, DEFAULT_FRAME_BYTES);
+    }
+
+    /**
+     * @param out the stream to write the compressed frames to
+     * @param huffman the encoding to compress with
+     * @param frameBytes the number of packed bytes to buffer before writing a frame
+     * @throws IllegalArgumentException if out or huffman is null, or frameBytes is not between 1
+     * and {@link #MAX_FRAME_BYTES}
+     */
+    public HuffmanWriter(OutputStream out, Huffman huffman, int frameBytes) {
+        if (out == null) {
+            throw new IllegalArgumentException("out null");
+        }
+        if (huffman == null) {
+            throw new IllegalArgumentException("huffman null");
+        }
+        if (frameBytes <= 0 || frameBytes > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("frame size out of range");
+        }
+        this.out = new DataOutputStream(out);
+        codec = huffman.getCodec();
+        this.frameBytes = frameBytes;
+        frame = new BitWriter(frameBytes + 8);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if any of the chars is not compressible
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        //bytes per char are at most 8, so slices of frameBytes / 8 chars stay within a frame
+        int slice = Math.max(1, frameBytes / 8);
+        while (len > 0) {
+            int n = Math.min(len, slice);
+            codec.encode(cbuf, off, n, frame);
+            off += n;
+            len -= n;
+            if (frame.byteLength() >= frameBytes) {
+                writeFrame();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if c is not compressible
+     */
+    @Override
+    public void write(int c) throws IOException {
+        single[0] = (char) c;
+        write(single, 0, 1);
+    }
+
+    /**
+     * Writes out the chars buffered so far as a frame, then flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeFrame();
+        out.flush();
+    }
+
+    /**
+     * Writes out the chars buffered so far and the end of the stream, then closes the underlying
+     * stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeFrame();
+            out.writeInt(0);
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        if (frame.bitLength() == 0) {
+            return;
+        }
+        out.writeInt((int) frame.bitLength());
+        frame.writeTo(out);
+        frame.reset();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+}
@@ -0,0 +1,415 @@
+import java.util.Arrays;
+
+/**
+ * Huffman coding of {@code int} symbols, such as token ids from a tokenizer, without boxing on
+ * any path. Symbols are kept in a sorted {@code int[]}; the codes, lengths and counts are arrays
+ * indexed by a symbol's position in it. Dense ids find their position through a direct lookup
+ * table, sparse ids by binary search.
+ *
+ * Codes are canonical and by default at most {@link #DEFAULT_MAX_CODE_LENGTH} bits long, which
+ * bounds the decode tables whatever the skew of the counts. Codes are always decoded several bits
+ * at a time: through the decode tables for up to 65536 symbols, and by
+ * comparing against the first code of each length for larger alphabets. Instances are immutable
+ * and can be shared between threads.
+ */
+public final class IntHuffman {
+    /**
+     * Longest code used when no limit is given, unless the alphabet has more than 2^24 symbols and
+     * needs longer codes.
+     */
+    public static final int DEFAULT_MAX_CODE_LENGTH = 24;
+    //most symbols the decode tables can tell apart, as they store 16 bit symbols
+    private static final int TABLE_SYMBOLS = 1 << 16;
+
+    //the alphabet in increasing order, and the code of each symbol
+    private final int[] symbols;
+    private final long[] codeBits;
+    private final byte[] codeLengths;
+    private final int maxCodeLength;
+    private final double expectedLength;
+    //position + 1 of every symbol, indexed by symbol - minSymbol; null when ids are sparse
+    private final int[] dense;
+    private final int minSymbol;
+    //decodes positions, null for alphabets too large for the tables
+    private final DecodeTable decodeTable;
+    //canonical decoding for large alphabets: positions in code order, and per code length the
+    //first code, the number of codes and where they start in byCode
+    private final int[] byCode;
+    private final long[] firstCode;
+    private final int[] lengthCount;
+    private final int[] lengthOffset;
+
+    /**
+     * Builds the code from the symbol frequencies of a seed.
+     *
+     * @param seed the symbols from which to build the encoding
+     * @throws IllegalArgumentException if seed is null, or has fewer than 2 distinct symbols
+     */
+    public IntHuffman(int[] seed) {
+        this(new Histogram(seed));
+    }
+
+    private IntHuffman(Histogram histogram) {
+        this(histogram.symbols, histogram.counts, defaultLimit(histogram.symbols));
+    }
+
+    /**
+     * @param symbols the distinct symbols of the alphabet, in any order
+     * @param counts the frequency of each symbol
+     * @throws IllegalArgumentException if either array is null, they differ in length, there are
+     * fewer than 2 symbols, a symbol repeats, or any count is not positive
+     */
+    public IntHuffman(int[] symbols, long[] counts) {
+        this(symbols, counts, defaultLimit(symbols));
+    }
+
+    private static int defaultLimit(int[] symbols) {
+        if (symbols == null || symbols.length < 2) {
+            return DEFAULT_MAX_CODE_LENGTH;
+        }
+        return Math.max(DEFAULT_MAX_CODE_LENGTH,
+                32 - Integer.numberOfLeadingZeros(symbols.length - 1));
+    }
+
+    /**
+     * @param symbols the distinct symbols of the alphabet, in any order
+     * @param counts the frequency of each symbol
+     * @param maxCodeLength the longest code allowed, in bits
+     * @throws IllegalArgumentException if either array is null, they differ in length, there are
+     * fewer than 2 symbols, a symbol repeats, or any count is not positive, or if maxCodeLength is
+     * larger than 57, the longest code the decode tables handle, or too small for the size of the
+     * alphabet
+     */
+    public IntHuffman(int[] symbols, long[] counts, int maxCodeLength) {
+        if (symbols == null || counts == null) {
+            throw new IllegalArgumentException("alphabet null");
+        }
+        if (symbols.length != counts.length) {
+            throw new IllegalArgumentException("symbols and counts differ in length");
+        }
+        int n = symbols.length;
+        if (n < 2) {
+            throw new IllegalArgumentException("alphabet of fewer than 2 symbols");
+        }
+        if (maxCodeLength > DecodeTable.MAX_CODE_LENGTH
+                || maxCodeLength < 32 - Integer.numberOfLeadingZeros(n - 1)) {
+            throw new IllegalArgumentException("max code length out of range");
+        }
+        for (long count : counts) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("non-positive freq");
+            }
+        }
+
+        //sort the symbols, carrying their counts along
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = symbols[i];
+        }
+        int[] order = PackageMerge.sortedOrder(keys);
+        this.symbols = new int[n];
+        long[] weights = new long[n];
+        long totalWeight = 0;
+        for (int i = 0; i < n; i++) {
+            this.symbols[i] = symbols[order[i]];
+            weights[i] = counts[order[i]];
+            totalWeight += weights[i];
+            if (i > 0 && this.symbols[i] == this.symbols[i - 1]) {
+                throw new IllegalArgumentException("symbol repeats");
+            }
+        }
+
+        int[] lengths = huffmanLengths(weights);
+        int maxLength = 0;
+        for (int len : lengths) {
+            maxLength = Math.max(maxLength, len);
+        }
+        if (maxLength > maxCodeLength) {
+            lengths = PackageMerge.codeLengths(weights, maxCodeLength);
+        }
+        codeBits = CanonicalCode.assign(lengths);
+        codeLengths = new byte[n];
+        maxLength = 0;
+        long weightedLength = 0;
+        for (int i = 0; i < n; i++) {
+            codeLengths[i] = (byte) lengths[i];
+            maxLength = Math.max(maxLength, lengths[i]);
+            weightedLength += weights[i] * lengths[i];
+        }
+        this.maxCodeLength = maxLength;
+        expectedLength = weightedLength / (double) totalWeight;
+
+        minSymbol = this.symbols[0];
+        long range = (long) this.symbols[n - 1] - minSymbol + 1;
+        if (range <= 8L * n + 1024) {
+            dense = new int[(int) range];
+            for (int i = 0; i < n; i++) {
+                dense[this.symbols[i] - minSymbol] = i + 1;
+            }
+        } else {
+            dense = null;
+        }
+
+        if (n <= TABLE_SYMBOLS) {
+            char[] positions = new char[n];
+            for (int i = 0; i < n; i++) {
+                positions[i] = (char) i;
+            }
+            decodeTable = new DecodeTable(positions, codeBits, lengths);
+            byCode = null;
+            firstCode = null;
+            lengthCount = null;
+            lengthOffset = null;
+        } else {
+            decodeTable = null;
+            lengthCount = new int[maxLength + 1];
+            for (int len : lengths) {
+                lengthCount[len]++;
+            }
+            lengthOffset = new int[maxLength + 2];
+            for (int len = 1; len <= maxLength; len++) {
+                lengthOffset[len + 1] = lengthOffset[len] + lengthCount[len];
+            }
+            firstCode = new long[maxLength + 1];
+            byCode = new int[n];
+            int[] next = Arrays.copyOf(lengthOffset, lengthOffset.length);
+            //canonical codes of one length are consecutive in symbol order
+            for (int i = 0; i < n; i++) {
+                int len = lengths[i];
+                if (next[len] == lengthOffset[len]) {
+                    firstCode[len] = codeBits[i];
+                }
+                byCode[next[len]++] = i;
+            }
+        }
+    }
+
+    //the distinct symbols of a seed and their counts, sorted by symbol
+    private static final class Histogram {
+        private final int[] symbols;
+        private final long[] counts;
+
+        Histogram(int[] seed) {
+            if (seed == null) {
+                throw new IllegalArgumentException("seed is null");
+            }
+            int[] sorted = seed.clone();
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    distinct++;
+                }
+            }
+            symbols = new int[distinct];
+            counts = new long[distinct];
+            int k = -1;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    symbols[++k] = sorted[i];
+                }
+                counts[k]++;
+            }
+        }
+    }
+
+    /*
+     * Optimal code lengths by the two-queue construction on primitive arrays: leaves sorted by
+     * weight, merged nodes come out in increasing order, and each node only records its parent.
+     * Depths then follow from the root down, as parents are created after their children.
+     */
+    private static int[] huffmanLengths(long[] weights) {
+        int n = weights.length;
+        int[] byWeight = PackageMerge.sortedOrder(weights);
+        long[] sorted = new long[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = weights[byWeight[i]];
+        }
+
+        long[] merged = new long[n - 1];
+        //nodes 0 to n - 1 are the leaves in weight order, n + k is the k-th merged node
+        int[] parent = new int[2 * n - 1];
+        int leaf = 0;
+        int head = 0;
+        for (int k = 0; k < n - 1; k++) {
+            long weight = 0;
+            for (int child = 0; child < 2; child++) {
+                if (head == k || (leaf < n && sorted[leaf] <= merged[head])) {
+                    weight += sorted[leaf];
+                    parent[leaf++] = n + k;
+                } else {
+                    weight += merged[head];
+                    parent[n + head++] = n + k;
+                }
+            }
+            merged[k] = weight;
+        }
+        int[] depth = new int[2 * n - 1];
+        for (int node = 2 * n - 3; node >= 0; node--) {
+            depth[node] = depth[parent[node]] + 1;
+        }
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            lengths[byWeight[i]] = depth[i];
+        }
+        return lengths;
+    }
+
+    //position of symbol in the alphabet, or -1
+    private int positionOf(int symbol) {
+        if (dense != null) {
+            long slot = (long) symbol - minSymbol;
+            return slot < 0 || slot >= dense.length ? -1 : dense[(int) slot] - 1;
+        }
+        int i = Arrays.binarySearch(symbols, symbol);
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * Computes the number of bits the encoding of the input takes, without encoding it.
+     *
+     * @param input the symbols to measure
+     * @param off the index of the first symbol
+     * @param len the number of symbols
+     * @return the length in bits of the encoding of input[off, off + len)
+     * @throws IllegalArgumentException if the input is null, the range is out of bounds, or the
+     * input contains symbols that are not compressible
+     */
+    public long encodedLength(int[] input, int off, int len) {
+        checkRange(input, off, len);
+        long bitLength = 0;
+        for (int i = off; i < off + len; i++) {
+            int p = positionOf(input[i]);
+            if (p < 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            bitLength += codeLengths[p];
+        }
+        return bitLength;
+    }
+
+    /**
+     * Compresses the input into packed bits, eight to a byte, most significant bit first. The last
+     * byte is padded with zeroes; use {@link #encodedLength(int[], int, int)} to get the exact
+     * number of bits for decompression.
+     *
+     * @param input the symbols to compress
+     * @return the packed encoding of input
+     * @throws IllegalArgumentException if the input is null or contains symbols that are not
+     * compressible
+     */
+    public byte[] compress(int[] input) {
+        return compress(input, 0, input == null ? 0 : input.length);
+    }
+
+    /**
+     * Compresses input[off, off + len), like {@link #compress(int[])}.
+     *
+     * @param input the symbols to compress
+     * @param off the index of the first symbol
+     * @param len the number of symbols
+     * @return the packed encoding of the range
+     * @throws IllegalArgumentException if the input is null, the range is out of bounds, or the
+     * input contains symbols that are not compressible
+     */
+    public byte[] compress(int[] input, int off, int len) {
+        checkRange(input, off, len);
+        BitWriter w = new BitWriter(len / 2 + 8);
+        for (int i = off; i < off + len; i++) {
+            int p = positionOf(input[i]);
+            if (p < 0) {
+                throw new IllegalArgumentException("input not in alphabet");
+            }
+            w.write(codeBits[p], codeLengths[p]);
+        }
+        return w.toByteArray();
+    }
+
+    private static void checkRange(int[] input, int off, int len) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        if (off < 0 || len < 0 || off > input.length - len) {
+            throw new IllegalArgumentException("range out of bounds");
+        }
+    }
+
+    /**
+     * Decompresses packed bits, as produced by {@link #compress(int[])}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the start of input
+     * @return the decoded symbols
+     * @throws IllegalArgumentException if the input is null, if bitLength is negative or larger
+     * than the input, or if the bits are not decodable
+     */
+    public int[] decompress(byte[] input, long bitLength) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        if (bitLength < 0 || bitLength > 8L * input.length) {
+            throw new IllegalArgumentException("bitLength out of range");
+        }
+        BitReader in = new BitReader(input, bitLength);
+        int[] out = new int[(int) Math.min(bitLength / maxCodeLength + 16, Integer.MAX_VALUE - 8)];
+        int size = 0;
+        char[] chunk = decodeTable == null ? null : new char[4096];
+        while (in.remaining() > 0) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, (int) Math.min(2L * out.length, Integer.MAX_VALUE - 8));
+            }
+            if (decodeTable != null) {
+                int n = decodeTable.decode(in, chunk, 0, Math.min(chunk.length, out.length - size));
+                for (int i = 0; i < n; i++) {
+                    out[size++] = symbols[chunk[i]];
+                }
+            } else {
+                out[size++] = symbols[decodeCanonical(in)];
+            }
+        }
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    //decodes one position by finding the code length whose range of codes holds the next bits
+    private int decodeCanonical(BitReader in) {
+        long window = in.peek();
+        for (int len = 1; len <= maxCodeLength; len++) {
+            long k = (window >>> (64 - len)) - firstCode[len];
+            if (k >= 0 && k < lengthCount[len]) {
+                if (len > in.remaining()) {
+                    break;
+                }
+                in.skip(len);
+                return byCode[lengthOffset[len] + (int) k];
+            }
+        }
+        throw new IllegalArgumentException("invalid");
+    }
+
+    /**
+     * @return the expected encoding length of a symbol drawn with the frequencies of the code
+     */
+    public double expectedEncodingLength() {
+        return expectedLength;
+    }
+
+    /**
+     * @param symbol a symbol of the alphabet
+     * @return the length of the code of symbol in bits
+     * @throws IllegalArgumentException if symbol is not in the alphabet
+     */
+    public int codeLength(int symbol) {
+        int p = positionOf(symbol);
+        if (p < 0) {
+            throw new IllegalArgumentException("input not in alphabet");
+        }
+        return codeLengths[p];
+    }
+
+    /**
+     * @return the number of symbols in the alphabet
+     */
+    public int size() {
+        return symbols.length;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Computes optimal prefix code lengths under a maximum code length with the package-merge
+ * algorithm. Without a binding limit the result costs the same as a Huffman code; with one, it
+ * is the cheapest code whose lengths all fit.
+ *
+ * Level 0 is the list of symbols by increasing weight. Every further level merges the symbols
+ * with the pairwise "packages" of the level below. The 2n - 2 cheapest items of the last level
+ * select the code: each symbol's length is the number of selected items it appears in, counting
+ * the items inside packages.
+ */
+final class PackageMerge {
+
+    private PackageMerge() {
+    }
+
+    /**
+     * @param weights  the positive weight of each symbol, at least two of them
+     * @param maxLength  the longest code length allowed, with 2^maxLength &gt;= weights.length
+     * @return  the code length of each symbol, in the order of weights
+     */
+    static int[] codeLengths(long[] weights, int maxLength) {
+        int n = weights.length;
+        int[] order = sortedOrder(weights);
+        long[] sorted = new long[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = weights[order[i]];
+        }
+
+        //isPackage[level][k]: whether the k-th cheapest item of the level is a package
+        boolean[][] isPackage = new boolean[maxLength][];
+        long[] items = sorted;
+        isPackage[0] = new boolean[n];
+        for (int level = 1; level < maxLength; level++) {
+            int packages = items.length / 2;
+            long[] merged = new long[n + packages];
+            boolean[] kinds = new boolean[n + packages];
+            int leaf = 0;
+            int pack = 0;
+            for (int k = 0; k < merged.length; k++) {
+                long packWeight = pack < packages ? items[2 * pack] + items[2 * pack + 1] : 0;
+                //ties go to the symbol, which keeps codes as short as possible
+                if (pack == packages || (leaf < n && sorted[leaf] <= packWeight)) {
+                    merged[k] = sorted[leaf++];
+                } else {
+                    merged[k] = packWeight;
+                    kinds[k] = true;
+                    pack++;
+                }
+            }
+            items = merged;
+            isPackage[level] = kinds;
+        }
+
+        //walk the selection down: the first p packages of a level select the first 2p items below
+        int[] sortedLengths = new int[n];
+        int selected = 2 * n - 2;
+        for (int level = maxLength - 1; level >= 0; level--) {
+            int packages = 0;
+            for (int k = 0; k < selected; k++) {
+                if (isPackage[level][k]) {
+                    packages++;
+                }
+            }
+            for (int leaf = 0; leaf < selected - packages; leaf++) {
+                sortedLengths[leaf]++;
+            }
+            selected = 2 * packages;
+        }
+
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            lengths[order[i]] = sortedLengths[i];
+        }
+        return lengths;
+    }
+
+    /**
+     * Stable merge sort on primitive arrays, so equal values keep their order and nothing is
+     * boxed.
+     *
+     * @param values  the values to order, not modified
+     * @return  the indexes of values in increasing order of value
+     */
+    static int[] sortedOrder(long[] values) {
+        int n = values.length;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        int[] buf = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int a = lo;
+                int b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (b == hi || (a < mid && values[order[a]] <= values[order[b]])) {
+                        buf[k] = order[a++];
+                    } else {
+                        buf[k] = order[b++];
+                    }
+                }
+            }
+            int[] t = order;
+            order = buf;
+            buf = t;
+        }
+        return order;
+    }
+}
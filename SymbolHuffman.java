@@ -0,0 +1,367 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Huffman coding of arbitrary symbols, such as words or tokens. Each symbol of the alphabet is
+ * given an int id, and the ids are coded by an {@link IntHuffman}; callers that already hold ids
+ * can use {@link #getIntHuffman()} directly and skip the per-symbol map lookups. Instances are
+ * immutable and can be shared between threads, as long as the symbols' {@code equals} and
+ * {@code hashCode} are.
+ *
+ * Ids go to symbols by decreasing frequency, symbols of equal frequency in the order of a
+ * comparator, so equal alphabets get equal codes whatever the iteration order of their maps.
+ * Without a comparator the order of a {@link SortedMap} alphabet is used, or else the natural
+ * order of the symbols. A code can also be shared as its symbol table, see
+ * {@link #toTableBytes(Format)}.
+ *
+ * @param <T> the type of the symbols
+ */
+public final class SymbolHuffman<T> {
+    /** First four bytes of a serialized symbol table, "HUFS". */
+    static final int TABLE_MAGIC = 0x48554653;
+
+    /**
+     * Writes and reads single symbols for {@link #toTableBytes(Format)} and
+     * {@link #fromTableBytes(byte[], Format)}.
+     *
+     * @param <T> the type of the symbols
+     */
+    public interface Format<T> {
+        void write(T symbol, DataOutput out) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    /** Format of String symbols, in modified UTF-8 as by {@link DataOutput#writeUTF(String)}. */
+    public static final Format<String> STRINGS = new Format<String>() {
+        @Override
+        public void write(String symbol, DataOutput out) throws IOException {
+            out.writeUTF(symbol);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    private final Map<T, Integer> ids;
+    private final List<T> symbols;
+    private final int[] counts;
+    private final IntHuffman codec;
+
+    /**
+     * Builds the code from the symbol frequencies of a seed, symbols of equal frequency in their
+     * natural order.
+     *
+     * @param seed the symbols from which to build the encoding
+     * @throws IllegalArgumentException if seed is null, contains null, has fewer than 2 distinct
+     * symbols, or has symbols of equal frequency that are not comparable
+     */
+    public SymbolHuffman(Iterable<T> seed) {
+        this(countsOf(seed), null);
+    }
+
+    /**
+     * Builds the code from the symbol frequencies of a seed.
+     *
+     * @param seed the symbols from which to build the encoding
+     * @param order the order of symbols of equal frequency, consistent with equals, or null for
+     * their natural order
+     * @throws IllegalArgumentException if seed is null, contains null, has fewer than 2 distinct
+     * symbols, or has symbols of equal frequency that order can not compare
+     */
+    public SymbolHuffman(Iterable<T> seed, Comparator<? super T> order) {
+        this(countsOf(seed), order);
+    }
+
+    /**
+     * Builds the code with symbols of equal frequency in the order of the alphabet if it is a
+     * {@link SortedMap}, or else in their natural order.
+     *
+     * @param alphabet a frequency map for the symbols in the alphabet
+     * @throws IllegalArgumentException if the alphabet is null, has fewer than 2 symbols, has a
+     * null symbol or any non-positive frequencies, or has symbols of equal frequency that are not
+     * comparable
+     */
+    public SymbolHuffman(Map<T, Integer> alphabet) {
+        this(alphabet, alphabet instanceof SortedMap
+                ? ((SortedMap<T, Integer>) alphabet).comparator() : null);
+    }
+
+    /**
+     * @param alphabet a frequency map for the symbols in the alphabet
+     * @param order the order of symbols of equal frequency, consistent with equals, or null for
+     * their natural order
+     * @throws IllegalArgumentException if the alphabet is null, has fewer than 2 symbols, has a
+     * null symbol or any non-positive frequencies, or has symbols of equal frequency that order
+     * can not compare
+     */
+    public SymbolHuffman(Map<T, Integer> alphabet, Comparator<? super T> order) {
+        this(inIdOrder(alphabet, order));
+    }
+
+    //byId holds the symbols and their counts, in id order
+    private SymbolHuffman(List<Map.Entry<T, Integer>> byId) {
+        int n = byId.size();
+        ids = new HashMap<T, Integer>();
+        List<T> symbolList = new ArrayList<T>(n);
+        int[] idArray = new int[n];
+        counts = new int[n];
+        long[] weights = new long[n];
+        for (int id = 0; id < n; id++) {
+            T symbol = byId.get(id).getKey();
+            if (ids.put(symbol, id) != null) {
+                throw new IllegalArgumentException("symbol repeats");
+            }
+            symbolList.add(symbol);
+            idArray[id] = id;
+            counts[id] = byId.get(id).getValue();
+            weights[id] = counts[id];
+        }
+        symbols = Collections.unmodifiableList(symbolList);
+        codec = new IntHuffman(idArray, weights);
+    }
+
+    //the entries of alphabet by decreasing count, equal counts in order
+    private static <T> List<Map.Entry<T, Integer>> inIdOrder(Map<T, Integer> alphabet,
+            final Comparator<? super T> order) {
+        if (alphabet == null) {
+            throw new IllegalArgumentException("alphabet null");
+        }
+        if (alphabet.size() < 2) {
+            throw new IllegalArgumentException("alphabet empty");
+        }
+        List<Map.Entry<T, Integer>> entries = new ArrayList<Map.Entry<T, Integer>>(alphabet.size());
+        for (Map.Entry<T, Integer> entry : alphabet.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new IllegalArgumentException("null symbol");
+            }
+            if (entry.getValue() == null || entry.getValue() <= 0) {
+                throw new IllegalArgumentException("non-positive freq");
+            }
+            entries.add(new AbstractMap.SimpleImmutableEntry<T, Integer>(entry));
+        }
+        try {
+            Collections.sort(entries, new Comparator<Map.Entry<T, Integer>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(Map.Entry<T, Integer> a, Map.Entry<T, Integer> b) {
+                    int byCount = Integer.compare(b.getValue(), a.getValue());
+                    if (byCount != 0) {
+                        return byCount;
+                    }
+                    if (order != null) {
+                        return order.compare(a.getKey(), b.getKey());
+                    }
+                    return ((Comparable<? super T>) a.getKey()).compareTo(b.getKey());
+                }
+            });
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("symbols of equal frequency are not comparable", e);
+        }
+        return entries;
+    }
+
+    private static <T> Map<T, Integer> countsOf(Iterable<T> seed) {
+        if (seed == null) {
+            throw new IllegalArgumentException("seed is null");
+        }
+        Map<T, Integer> counts = new HashMap<T, Integer>();
+        for (T symbol : seed) {
+            if (symbol == null) {
+                throw new IllegalArgumentException("null symbol");
+            }
+            Integer count = counts.get(symbol);
+            counts.put(symbol, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    /**
+     * @param symbol a symbol of the alphabet
+     * @return the id the symbol is coded as
+     * @throws IllegalArgumentException if symbol is not in the alphabet
+     */
+    public int idOf(T symbol) {
+        Integer id = ids.get(symbol);
+        if (id == null) {
+            throw new IllegalArgumentException("input not in alphabet");
+        }
+        return id;
+    }
+
+    /**
+     * @param id an id returned by {@link #idOf(Object)}
+     * @return the symbol with that id
+     * @throws IllegalArgumentException if no symbol has that id
+     */
+    public T symbolOf(int id) {
+        if (id < 0 || id >= symbols.size()) {
+            throw new IllegalArgumentException("no symbol with id " + id);
+        }
+        return symbols.get(id);
+    }
+
+    /**
+     * @return the code of the symbol ids
+     */
+    public IntHuffman getIntHuffman() {
+        return codec;
+    }
+
+    /**
+     * Computes the number of bits the encoding of the input takes, without encoding it.
+     *
+     * @param input the symbols to measure
+     * @return the length in bits of the encoding of input
+     * @throws IllegalArgumentException if the input is null or contains symbols that are not
+     * compressible
+     */
+    public long encodedLength(List<T> input) {
+        int[] inputIds = idsOf(input);
+        return codec.encodedLength(inputIds, 0, inputIds.length);
+    }
+
+    /**
+     * Compresses the input into packed bits, eight to a byte, most significant bit first. The last
+     * byte is padded with zeroes; use {@link #encodedLength(List)} to get the exact number of
+     * bits for {@link #decompress(byte[], long)}.
+     *
+     * @param input the symbols to compress
+     * @return the packed encoding of input
+     * @throws IllegalArgumentException if the input is null or contains symbols that are not
+     * compressible
+     */
+    public byte[] compress(List<T> input) {
+        return codec.compress(idsOf(input));
+    }
+
+    private int[] idsOf(List<T> input) {
+        if (input == null) {
+            throw new IllegalArgumentException("input null");
+        }
+        int[] inputIds = new int[input.size()];
+        int i = 0;
+        for (T symbol : input) {
+            inputIds[i++] = idOf(symbol);
+        }
+        return inputIds;
+    }
+
+    /**
+     * Decompresses packed bits, as produced by {@link #compress(List)}.
+     *
+     * @param input the packed bits to decompress, most significant bit first
+     * @param bitLength the number of meaningful bits at the start of input
+     * @return the decoded symbols
+     * @throws IllegalArgumentException if the input is null, if bitLength is negative or larger
+     * than the input, or if the bits are not decodable
+     */
+    public List<T> decompress(byte[] input, long bitLength) {
+        int[] decoded = codec.decompress(input, bitLength);
+        List<T> out = new ArrayList<T>(decoded.length);
+        for (int id : decoded) {
+            out.add(symbols.get(id));
+        }
+        return out;
+    }
+
+    /**
+     * Serializes the code as its symbol table, all numbers big endian:
+     * <pre>
+     *   int    TABLE_MAGIC
+     *   int    number of symbols n
+     *   n x    (int frequency, symbol as written by format), in id order
+     * </pre>
+     * {@link #fromTableBytes(byte[], Format)} rebuilds the same ids and codes from it, without
+     * the comparator the ids were ordered by.
+     *
+     * @param format writes each symbol
+     * @return the serialized symbol table
+     * @throws IllegalArgumentException if format is null or fails to write a symbol
+     */
+    public byte[] toTableBytes(Format<? super T> format) {
+        if (format == null) {
+            throw new IllegalArgumentException("format null");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(TABLE_MAGIC);
+            out.writeInt(symbols.size());
+            for (int id = 0; id < symbols.size(); id++) {
+                out.writeInt(counts[id]);
+                format.write(symbols.get(id), out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("symbol not writable", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Loads a code serialized by {@link #toTableBytes(Format)}, with the ids of the serialized
+     * code.
+     *
+     * @param bytes the serialized symbol table
+     * @param format reads each symbol
+     * @param <T> the type of the symbols
+     * @return a {@code SymbolHuffman} with the serialized ids and codes
+     * @throws IllegalArgumentException if bytes or format is null, or bytes is not a well-formed
+     * symbol table
+     */
+    public static <T> SymbolHuffman<T> fromTableBytes(byte[] bytes, Format<T> format) {
+        if (bytes == null || format == null) {
+            throw new IllegalArgumentException("argument null");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<Map.Entry<T, Integer>> byId;
+        try {
+            if (bytes.length < 8 || in.readInt() != TABLE_MAGIC) {
+                throw new IllegalArgumentException("not a symbol table");
+            }
+            int size = in.readInt();
+            //every entry takes at least its 4 byte frequency
+            if (size < 2 || size > in.available() / 4) {
+                throw new IllegalArgumentException("corrupt symbol table header");
+            }
+            byId = new ArrayList<Map.Entry<T, Integer>>(size);
+            for (int id = 0; id < size; id++) {
+                int count = in.readInt();
+                T symbol = format.read(in);
+                if (count <= 0 || symbol == null) {
+                    throw new IllegalArgumentException("corrupt symbol table entry");
+                }
+                byId.add(new AbstractMap.SimpleImmutableEntry<T, Integer>(symbol, count));
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("trailing bytes after symbol table");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("symbol table truncated", e);
+        }
+        return new SymbolHuffman<T>(byId);
+    }
+
+    /**
+     * @return the expected encoding length of a symbol drawn with the frequencies of the code
+     */
+    public double expectedEncodingLength() {
+        return codec.expectedEncodingLength();
+    }
+}
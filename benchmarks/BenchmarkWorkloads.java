@@ -0,0 +1,137 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Builds the operations measured by the JMH benchmarks in package {@code benchmarks}. JMH does
+ * not accept benchmarks in the default package, and classes in a named package can not refer to
+ * the default package, so the benchmarks look this class up by name once per setup and then only
+ * call the returned tasks.
+ */
+public final class BenchmarkWorkloads {
+    private BenchmarkWorkloads() {
+    }
+
+    /**
+     * Letters follow a roughly Zipf distribution, so codes have a realistic spread of lengths.
+     *
+     * @param alphabetSize the number of distinct letters
+     * @param inputLength the number of chars to compress and decompress
+     * @return construction, compression and decompression tasks by benchmark name
+     */
+    public static Map<String, Callable<Object>> huffman(int alphabetSize, int inputLength) {
+        final Map<Character, Integer> alphabet = new HashMap<Character, Integer>();
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < alphabetSize; i++) {
+            //the i-th letter is 1 / (i + 1) as frequent as the first
+            int count = Math.max(1, 10 * alphabetSize / (i + 1));
+            char letter = (char) ('!' + i);
+            alphabet.put(letter, count);
+            for (int k = 0; k < count; k++) {
+                b.append(letter);
+            }
+        }
+        final String seed = b.toString();
+        final Huffman huffman = new Huffman(alphabet);
+
+        //draw the input from the seed, so it has the same letter frequencies
+        Random r = new Random(42);
+        char[] text = new char[inputLength];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = seed.charAt(r.nextInt(seed.length()));
+        }
+        final String input = new String(text);
+        final String bits = huffman.compress(input);
+        final byte[] packed = huffman.compressToBytes(input);
+        final long bitLength = huffman.encodedLength(input);
+
+        Map<String, Callable<Object>> tasks = new HashMap<String, Callable<Object>>();
+        tasks.put("constructFromSeed", new Callable<Object>() {
+            public Object call() {
+                return new Huffman(seed);
+            }
+        });
+        tasks.put("constructFromMap", new Callable<Object>() {
+            public Object call() {
+                return new Huffman(alphabet);
+            }
+        });
+        tasks.put("compress", new Callable<Object>() {
+            public Object call() {
+                return huffman.compress(input);
+            }
+        });
+        tasks.put("compressToBytes", new Callable<Object>() {
+            public Object call() {
+                return huffman.compressToBytes(input);
+            }
+        });
+        tasks.put("decompress", new Callable<Object>() {
+            public Object call() {
+                return huffman.decompress(bits);
+            }
+        });
+        tasks.put("decompressBytes", new Callable<Object>() {
+            public Object call() {
+                return huffman.decompress(packed, bitLength);
+            }
+        });
+        tasks.put("expectedEncodingLength", new Callable<Object>() {
+            public Object call() {
+                return huffman.expectedEncodingLength();
+            }
+        });
+        return tasks;
+    }
+
+    /**
+     * Every task adds the same distinct values in random order and extracts them all again, the
+     * access pattern of building a Huffman tree.
+     *
+     * @param size the number of values
+     * @return add and extractMin tasks by benchmark name
+     */
+    public static Map<String, Callable<Object>> heap(int size) {
+        final Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        Random r = new Random(42);
+        for (int i = size - 1; i > 0; i--) {
+            int j = r.nextInt(i + 1);
+            Integer t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+
+        Map<String, Callable<Object>> tasks = new HashMap<String, Callable<Object>>();
+        tasks.put("minPQ", new Callable<Object>() {
+            public Object call() {
+                MinPQ<Integer> pq = new MinPQ<Integer>();
+                for (Integer v : values) {
+                    pq.add(v);
+                }
+                long sum = 0;
+                while (!pq.isEmpty()) {
+                    sum += pq.extractMin();
+                }
+                return sum;
+            }
+        });
+        tasks.put("binaryMinHeap", new Callable<Object>() {
+            public Object call() {
+                BinaryMinHeap<Integer, Integer> heap = new BinaryMinHeapImpl<Integer, Integer>();
+                for (Integer v : values) {
+                    heap.add(v, v);
+                }
+                long sum = 0;
+                while (!heap.isEmpty()) {
+                    sum += heap.extractMin();
+                }
+                return sum;
+            }
+        });
+        return tasks;
+    }
+}
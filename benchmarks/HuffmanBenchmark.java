@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construction, compression and decompression of {@code Huffman} at several alphabet and input
+ * sizes. The workloads are built by {@code BenchmarkWorkloads.huffman}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HuffmanBenchmark {
+    @Param({"16", "256", "4096"})
+    public int alphabetSize;
+
+    @Param({"1000", "100000"})
+    public int inputLength;
+
+    private Callable<Object> constructFromSeed;
+    private Callable<Object> constructFromMap;
+    private Callable<Object> compress;
+    private Callable<Object> compressToBytes;
+    private Callable<Object> decompress;
+    private Callable<Object> decompressBytes;
+    private Callable<Object> expectedEncodingLength;
+
+    @Setup
+    public void setUp() {
+        Map<String, Callable<Object>> tasks = Workloads.load("huffman", alphabetSize, inputLength);
+        constructFromSeed = tasks.get("constructFromSeed");
+        constructFromMap = tasks.get("constructFromMap");
+        compress = tasks.get("compress");
+        compressToBytes = tasks.get("compressToBytes");
+        decompress = tasks.get("decompress");
+        decompressBytes = tasks.get("decompressBytes");
+        expectedEncodingLength = tasks.get("expectedEncodingLength");
+    }
+
+    @Benchmark
+    public Object constructFromSeed() throws Exception {
+        return constructFromSeed.call();
+    }
+
+    @Benchmark
+    public Object constructFromMap() throws Exception {
+        return constructFromMap.call();
+    }
+
+    @Benchmark
+    public Object compress() throws Exception {
+        return compress.call();
+    }
+
+    @Benchmark
+    public Object compressToBytes() throws Exception {
+        return compressToBytes.call();
+    }
+
+    @Benchmark
+    public Object decompress() throws Exception {
+        return decompress.call();
+    }
+
+    @Benchmark
+    public Object decompressBytes() throws Exception {
+        return decompressBytes.call();
+    }
+
+    @Benchmark
+    public Object expectedEncodingLength() throws Exception {
+        return expectedEncodingLength.call();
+    }
+}
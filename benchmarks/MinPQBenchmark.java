@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filling and emptying a {@code MinPQ} and a {@code BinaryMinHeapImpl} at several sizes. The
+ * workloads are built by {@code BenchmarkWorkloads.heap}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinPQBenchmark {
+    @Param({"16", "256", "4096", "65536"})
+    public int size;
+
+    private Callable<Object> minPQ;
+    private Callable<Object> binaryMinHeap;
+
+    @Setup
+    public void setUp() {
+        Map<String, Callable<Object>> tasks = Workloads.load("heap", size);
+        minPQ = tasks.get("minPQ");
+        binaryMinHeap = tasks.get("binaryMinHeap");
+    }
+
+    @Benchmark
+    public Object minPQAddExtractMin() throws Exception {
+        return minPQ.call();
+    }
+
+    @Benchmark
+    public Object binaryMinHeapAddExtractMin() throws Exception {
+        return binaryMinHeap.call();
+    }
+}
@@ -0,0 +1,30 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+//reaches BenchmarkWorkloads in the default package, which can not be imported
+final class Workloads {
+    private Workloads() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Callable<Object>> load(String factory, int... args) {
+        Class<?>[] types = new Class<?>[args.length];
+        Object[] boxed = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = int.class;
+            boxed[i] = args[i];
+        }
+        try {
+            Method m = Class.forName("BenchmarkWorkloads").getMethod(factory, types);
+            return (Map<String, Callable<Object>>) m.invoke(null, boxed);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}